@@ -0,0 +1,36 @@
+package UCF2SBOL.UCF2SBOL;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which also reports the allocation rate and the bytes
+ * allocated per operation, and writes the results as JSON so that runs can be compared. Any JMH
+ * command line option can be given; -rff chooses another result file than jmh-result.json.
+ */
+public class BenchmarkMain {
+
+	static final String RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(commandLine);
+		options.addProfiler(GCProfiler.class);
+		if (!commandLine.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLine.getResult().hasValue()) {
+			options.result(RESULT_FILE);
+		}
+		if (commandLine.getIncludes().isEmpty()) {
+			options.include(ConversionBenchmark.class.getSimpleName());
+		}
+		new Runner(options.build()).run();
+	}
+}
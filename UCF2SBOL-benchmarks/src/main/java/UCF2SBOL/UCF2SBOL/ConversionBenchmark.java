@@ -0,0 +1,211 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sbolstandard.core2.SBOLConversionException;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidate;
+import org.sbolstandard.core2.SBOLValidationException;
+
+/**
+ * Times each stage of a conversion against the UCF files bundled with the converter, or against UCF
+ * files given by path with -p ucf=&lt;file&gt;, such as those {@link UCFGenerator} writes. The records are
+ * parsed once per trial; the device stages get a fresh document with the parts already converted for
+ * every invocation, so only the stage itself is measured. Validation and writing use a document
+ * converted once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+	@Param({ "Eco1C1G1T0.UCF.json", "Eco1C1G1T1.UCF.json", "Eco1C1G1T1-synbiohub.UCF.json",
+			"Eco1C1G1T1-tandem-synbiohub.UCF.json" })
+	public String ucf;
+
+	byte[] bytes;
+	File file;
+	HashMap<String,JSONObject> parts = new HashMap<String,JSONObject>();
+	List<JSONObject> gateParts = new ArrayList<JSONObject>();
+	HashMap<String,JSONObject> gates = new HashMap<String,JSONObject>();
+	HashMap<String,JSONObject> responses = new HashMap<String,JSONObject>();
+	List<JSONObject> sensors = new ArrayList<JSONObject>();
+	List<JSONObject> reporters = new ArrayList<JSONObject>();
+	SBOLDocument converted;
+
+	/**
+	 * A document holding the converted parts, and the index of the parts the devices use.
+	 */
+	@State(Scope.Thread)
+	public static class Parts {
+		SBOLDocument document;
+		PartIndex partIndex;
+
+		@Setup(Level.Invocation)
+		public void setup(ConversionBenchmark benchmark) throws SBOLValidationException {
+			document = Cello2SBOL.createDocument(true);
+			Cello2SBOL.convertPartsToSBOL(document, benchmark.parts.values());
+			partIndex = Cello2SBOL.indexParts(document, benchmark.gateParts, benchmark.sensors, benchmark.reporters);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, ParseException, SBOLValidationException {
+		InputStream in = ConversionBenchmark.class.getResourceAsStream("/" + ucf);
+		if (in == null && new File(ucf).isFile()) {
+			in = new FileInputStream(ucf);
+		}
+		if (in == null) {
+			throw new IllegalStateException("Missing resource " + ucf);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				out.write(buffer, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+		bytes = out.toByteArray();
+		file = File.createTempFile("benchmark", ".UCF.json");
+		FileOutputStream fileOut = new FileOutputStream(file);
+		try {
+			fileOut.write(bytes);
+		} finally {
+			fileOut.close();
+		}
+
+		UCFReader reader = reader();
+		JSONObject record;
+		while ((record = reader.next()) != null) {
+			String collection = (String) record.get("collection");
+			if (collection.equals("parts")) {
+				parts.put((String) record.get("name"), record);
+			} else if (collection.equals("gate_parts")) {
+				gateParts.add(record);
+			} else if (collection.equals("gates")) {
+				gates.put((String) record.get("gate_name"), record);
+			} else if (collection.equals("response_functions")) {
+				responses.put((String) record.get("gate_name"), record);
+			} else if (collection.equals("input_sensors")) {
+				sensors.add(record);
+			} else if (collection.equals("output_reporters")) {
+				reporters.add(record);
+			}
+		}
+		reader.close();
+
+		converted = Cello2SBOL.convert(file.getPath(), new HashMap<String,String>(), Cello2SBOL.now());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		file.delete();
+	}
+
+	private UCFReader reader() {
+		return new UCFReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8),
+				Cello2SBOL.conversionCollections);
+	}
+
+	@Benchmark
+	public int parse() throws IOException, ParseException {
+		UCFReader reader = reader();
+		int records = 0;
+		while (reader.next() != null) {
+			records++;
+		}
+		reader.close();
+		return records;
+	}
+
+	@Benchmark
+	public SBOLDocument convertParts() throws SBOLValidationException {
+		SBOLDocument document = Cello2SBOL.createDocument(true);
+		Cello2SBOL.convertPartsToSBOL(document, parts.values());
+		return document;
+	}
+
+	@Benchmark
+	public SBOLDocument convertGateParts(Parts state) throws SBOLValidationException {
+		InteractionRegistry interactions = new InteractionRegistry();
+		Cello2SBOL.convertGatePartsToSBOL(state.document, state.partIndex, interactions, gateParts, gates, responses);
+		interactions.emit(state.document);
+		return state.document;
+	}
+
+	@Benchmark
+	public SBOLDocument convertInputSensors(Parts state) throws SBOLValidationException {
+		InteractionRegistry interactions = new InteractionRegistry();
+		Cello2SBOL.convertInputSensorsToSBOL(state.document, state.partIndex, interactions, sensors);
+		interactions.emit(state.document);
+		return state.document;
+	}
+
+	@Benchmark
+	public SBOLDocument convertOutputReporters(Parts state) throws SBOLValidationException {
+		Cello2SBOL.convertOutputReportersToSBOL(state.document, state.partIndex, reporters);
+		return state.document;
+	}
+
+	@Benchmark
+	public int validate() {
+		SBOLValidate.clearErrors();
+		SBOLValidate.validateSBOL(converted, true, true, true);
+		return SBOLValidate.getNumErrors();
+	}
+
+	@Benchmark
+	public long write() throws SBOLConversionException {
+		CountingOutputStream out = new CountingOutputStream();
+		converted.write(out);
+		return out.count;
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,523 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Writes synthetic UCF files for scale and stress testing. Part types and sequence lengths follow the
+ * parts of a bundled UCF file, Eco1C1G1T1-tandem-synbiohub.UCF.json by default. Gates, sensors and
+ * reporters are assembled from the generated parts, and every gate gets a response function, toxicity
+ * data and cytometry data. The same options and seed always give the same file.
+ *
+ * <pre>
+ * UCFGenerator [--parts=n] [--gates=n] [--sensors=n] [--reporters=n] [--motifs=n]
+ *              [--cytometry-points=n] [--seed=n] [--template=resource] output.UCF.json
+ * </pre>
+ */
+public class UCFGenerator {
+
+	static final String DEFAULT_TEMPLATE = "Eco1C1G1T1-tandem-synbiohub.UCF.json";
+
+	private static final List<String> DEVICE_TYPES = Arrays.asList("promoter", "ribozyme", "rbs", "cds", "terminator");
+	private static final String BACKBONE = "backbone";
+	private static final int OUTPUT_BINS = 250;
+	private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+
+	/**
+	 * The number of parts of a type in the template and the range of their sequence lengths.
+	 */
+	static class PartType {
+		final String type;
+		int count;
+		int minLength = Integer.MAX_VALUE;
+		int maxLength;
+
+		PartType(String type) {
+			this.type = type;
+		}
+	}
+
+	private int parts = 147;
+	private int gates = 20;
+	private int sensors = 4;
+	private int reporters = 1;
+	private int motifs = 255;
+	private int cytometryPoints = 12;
+	private long seed = 0;
+	private String template = DEFAULT_TEMPLATE;
+
+	private Random random;
+	private Map<String,List<String>> partNames;
+
+	public UCFGenerator setParts(int parts) {
+		this.parts = parts;
+		return this;
+	}
+
+	public UCFGenerator setGates(int gates) {
+		this.gates = gates;
+		return this;
+	}
+
+	public UCFGenerator setSensors(int sensors) {
+		this.sensors = sensors;
+		return this;
+	}
+
+	public UCFGenerator setReporters(int reporters) {
+		this.reporters = reporters;
+		return this;
+	}
+
+	public UCFGenerator setMotifs(int motifs) {
+		this.motifs = motifs;
+		return this;
+	}
+
+	public UCFGenerator setCytometryPoints(int cytometryPoints) {
+		this.cytometryPoints = cytometryPoints;
+		return this;
+	}
+
+	public UCFGenerator setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	public UCFGenerator setTemplate(String template) {
+		this.template = template;
+		return this;
+	}
+
+	/**
+	 * @return the part types of the template in the order they first appear
+	 */
+	static Map<String,PartType> readPartTypes(String template) throws IOException, ParseException {
+		InputStream in = UCFGenerator.class.getResourceAsStream("/" + template);
+		if (in == null) {
+			throw new IllegalArgumentException("Missing resource " + template);
+		}
+		LinkedHashMap<String,PartType> types = new LinkedHashMap<String,PartType>();
+		UCFReader reader = new UCFReader(new InputStreamReader(in, StandardCharsets.UTF_8),
+				Collections.singleton("parts"));
+		try {
+			JSONObject part;
+			while ((part = reader.next()) != null) {
+				String type = (String)part.get("type");
+				PartType partType = types.get(type);
+				if (partType == null) {
+					partType = new PartType(type);
+					types.put(type, partType);
+				}
+				int length = ((String)part.get("dnasequence")).length();
+				partType.count++;
+				partType.minLength = Math.min(partType.minLength, length);
+				partType.maxLength = Math.max(partType.maxLength, length);
+			}
+		} finally {
+			reader.close();
+		}
+		for (String type : DEVICE_TYPES) {
+			if (!types.containsKey(type)) {
+				throw new IllegalArgumentException("Template " + template + " has no " + type + " parts");
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * Share the parts among the types in proportion to the template, with at least one part of each
+	 * type that devices are made of, and a backbone if the template has one.
+	 */
+	Map<String,Integer> partCounts(Map<String,PartType> types) {
+		int minimum = DEVICE_TYPES.size() + (types.containsKey(BACKBONE) ? 1 : 0);
+		if (parts < minimum) {
+			throw new IllegalArgumentException("At least " + minimum + " parts are needed for the part types of "
+					+ template);
+		}
+		int total = 0;
+		for (PartType type : types.values()) {
+			total += type.count;
+		}
+		LinkedHashMap<String,Integer> counts = new LinkedHashMap<String,Integer>();
+		int assigned = 0;
+		for (PartType type : types.values()) {
+			int count = (int)((long)parts * type.count / total);
+			if (count == 0 && (DEVICE_TYPES.contains(type.type) || type.type.equals(BACKBONE))) {
+				count = 1;
+			}
+			counts.put(type.type, count);
+			assigned += count;
+		}
+		// Rounding is made up with coding sequences, the most common type
+		counts.put("cds", counts.get("cds") + parts - assigned);
+		if (counts.get("cds") < 1) {
+			throw new IllegalArgumentException("Too few parts for the part types of " + template);
+		}
+		return counts;
+	}
+
+	public void generate(String path) throws IOException, ParseException {
+		random = new Random(seed);
+		partNames = new HashMap<String,List<String>>();
+		Map<String,PartType> types = readPartTypes(template);
+		Map<String,Integer> counts = partCounts(types);
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8));
+		try {
+			out.write("[\n");
+			boolean first = true;
+			for (JSONObject record : header()) {
+				first = write(out, record, first);
+			}
+			for (Map.Entry<String,Integer> count : counts.entrySet()) {
+				PartType type = types.get(count.getKey());
+				for (int i = 0; i < count.getValue(); i++) {
+					first = write(out, part(count.getKey(), i, type), first);
+				}
+			}
+			if (partNames.containsKey(BACKBONE)) {
+				first = write(out, containers(partNames.get(BACKBONE).get(0)), first);
+			}
+			for (int i = 0; i < gates; i++) {
+				String regulator = pick("cds", i);
+				String name = "G" + i + "_" + regulator;
+				first = write(out, gate(name, regulator), first);
+				first = write(out, gateParts(name, i), first);
+				first = write(out, responseFunction(name), first);
+				first = write(out, gateToxicity(name), first);
+				first = write(out, gateCytometry(name), first);
+			}
+			for (int i = 0; i < sensors; i++) {
+				first = write(out, sensor(i), first);
+			}
+			for (int i = 0; i < reporters; i++) {
+				first = write(out, reporter(i), first);
+			}
+			for (int i = 0; i < motifs; i++) {
+				first = write(out, motif(), first);
+			}
+			out.write("\n]\n");
+		} finally {
+			out.close();
+		}
+	}
+
+	private static boolean write(Writer out, JSONObject record, boolean first) throws IOException {
+		if (!first) {
+			out.write(",\n");
+		}
+		record.writeJSONString(out);
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONObject record(String collection) {
+		JSONObject record = new JSONObject();
+		record.put("collection", collection);
+		return record;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONArray array(Object... values) {
+		JSONArray array = new JSONArray();
+		array.addAll(Arrays.asList(values));
+		return array;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<JSONObject> header() {
+		JSONObject header = record("header");
+		header.put("description", "Synthetic UCF with " + parts + " parts and " + gates + " gates");
+		header.put("version", "Synthetic");
+		header.put("author", array("UCFGenerator"));
+		header.put("organism", "Escherichia coli");
+		header.put("seed", String.valueOf(seed));
+
+		JSONObject measurement = record("measurement_std");
+		measurement.put("signal_carrier_units", "RPU");
+
+		JSONObject constraint = new JSONObject();
+		constraint.put("type", "NOR");
+		constraint.put("max_instances", gates);
+		JSONObject logic = record("logic_constraints");
+		logic.put("available_gates", array(constraint));
+		return Arrays.asList(header, measurement, logic);
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject part(String type, int index, PartType template) {
+		String name = type + "_" + index;
+		List<String> names = partNames.get(type);
+		if (names == null) {
+			names = new ArrayList<String>();
+			partNames.put(type, names);
+		}
+		names.add(name);
+
+		int length = template.minLength + random.nextInt(template.maxLength - template.minLength + 1);
+		StringBuilder sequence = new StringBuilder(length);
+		if (type.equals("cds")) {
+			// A start codon, whole codons and a stop codon
+			length = Math.max(6, length - length % 3);
+			sequence.append("ATG");
+			appendBases(sequence, length - 6);
+			sequence.append("TAA");
+		} else {
+			appendBases(sequence, length);
+		}
+		JSONObject part = record("parts");
+		part.put("type", type);
+		part.put("name", name);
+		part.put("dnasequence", sequence.toString());
+		return part;
+	}
+
+	private void appendBases(StringBuilder sequence, int count) {
+		for (int i = 0; i < count; i++) {
+			sequence.append(BASES[random.nextInt(BASES.length)]);
+		}
+	}
+
+	/**
+	 * @return the part of a type for the index-th device, going round the parts of that type
+	 */
+	private String pick(String type, int index) {
+		List<String> names = partNames.get(type);
+		return names.get(index % names.size());
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject containers(String backbone) {
+		JSONObject container = record("containers");
+		container.put("name", "plasmid1");
+		container.put("type", "plasmid");
+		container.put("gate_type", "NOT,NOR");
+		container.put("backbone", backbone);
+		return container;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject gate(String name, String regulator) {
+		JSONObject gate = record("gates");
+		gate.put("regulator", regulator);
+		gate.put("group_name", regulator);
+		gate.put("gate_name", name);
+		gate.put("gate_type", "NOR");
+		gate.put("system", "TetR");
+		gate.put("color_hexcode", String.format("%06X", random.nextInt(0x1000000)));
+		return gate;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject gateParts(String name, int index) {
+		JSONObject cassette = new JSONObject();
+		cassette.put("maps_to_variable", "x");
+		cassette.put("cassette_parts", array(pick("ribozyme", index), pick("rbs", index), pick("cds", index),
+				pick("terminator", index)));
+		JSONObject gateParts = record("gate_parts");
+		gateParts.put("gate_name", name);
+		gateParts.put("expression_cassettes", array(cassette));
+		gateParts.put("promoter", pick("promoter", index));
+		return gateParts;
+	}
+
+	private static JSONObject parameter(String name, double value) {
+		return parameter("name", name, "value", value);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONObject parameter(String nameKey, String name, String valueKey, double value) {
+		JSONObject parameter = new JSONObject();
+		parameter.put(nameKey, name);
+		parameter.put(valueKey, value);
+		return parameter;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject responseFunction(String name) {
+		double ymin = 0.01 + random.nextDouble() * 0.2;
+		double ymax = 1.0 + random.nextDouble() * 5.0;
+		JSONObject variable = new JSONObject();
+		variable.put("name", "x");
+		variable.put("off_threshold", 0.01 + random.nextDouble() * 0.1);
+		variable.put("on_threshold", 0.5 + random.nextDouble());
+		JSONObject response = record("response_functions");
+		response.put("gate_name", name);
+		response.put("equation", "ymin+(ymax-ymin)/(1.0+(x/K)^n)");
+		response.put("tandem_efficiency_factor", "alpha * (K^n + beta * x^n) / (K^n + x^n)");
+		response.put("variables", array(variable));
+		response.put("parameters", array(parameter("ymax", ymax), parameter("ymin", ymin),
+				parameter("K", 0.01 + random.nextDouble()), parameter("n", 1.0 + random.nextDouble() * 3.0),
+				parameter("alpha", random.nextDouble()), parameter("beta", random.nextDouble())));
+		return response;
+	}
+
+	/**
+	 * @return cytometryPoints input levels, log-spaced as in the bundled files
+	 */
+	private double[] inputs() {
+		double[] inputs = new double[cytometryPoints];
+		for (int i = 0; i < cytometryPoints; i++) {
+			inputs[i] = 0.001 * Math.pow(10.0, 4.0 * (i + random.nextDouble()) / cytometryPoints);
+		}
+		return inputs;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject gateToxicity(String name) {
+		JSONArray input = new JSONArray();
+		JSONArray growth = new JSONArray();
+		for (double x : inputs()) {
+			input.add(x);
+			growth.add(0.9 + random.nextDouble() * 0.2);
+		}
+		JSONObject toxicity = record("gate_toxicity");
+		toxicity.put("gate_name", name);
+		toxicity.put("maps_to_variable", "x");
+		toxicity.put("input", input);
+		toxicity.put("growth", growth);
+		return toxicity;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject gateCytometry(String name) {
+		JSONArray bins = new JSONArray();
+		for (int i = 0; i < OUTPUT_BINS; i++) {
+			bins.add(0.001 * Math.pow(10.0, 6.0 * i / (OUTPUT_BINS - 1)));
+		}
+		JSONArray data = new JSONArray();
+		for (double x : inputs()) {
+			// A normal distribution of counts around a bin that falls as the input rises
+			double peak = OUTPUT_BINS * (0.8 - 0.6 * Math.log10(x * 1000.0) / 4.0);
+			double width = 5.0 + random.nextDouble() * 10.0;
+			JSONArray counts = new JSONArray();
+			double total = 0.0;
+			double[] values = new double[OUTPUT_BINS];
+			for (int i = 0; i < OUTPUT_BINS; i++) {
+				values[i] = Math.exp(-0.5 * (i - peak) * (i - peak) / (width * width));
+				total += values[i];
+			}
+			for (int i = 0; i < OUTPUT_BINS; i++) {
+				counts.add(values[i] / total);
+			}
+			JSONObject point = new JSONObject();
+			point.put("maps_to_variable", "x");
+			point.put("input", x);
+			point.put("output_bins", bins);
+			point.put("output_counts", counts);
+			data.add(point);
+		}
+		JSONObject cytometry = record("gate_cytometry");
+		cytometry.put("gate_name", name);
+		cytometry.put("cytometry_data", data);
+		return cytometry;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject sensor(int index) {
+		String cds = pick("cds", gates + index);
+		boolean stimulator = index % 2 == 1;
+		JSONObject sensor = record("input_sensors");
+		sensor.put("name", cds + "_sensor" + index);
+		sensor.put("input_molecule", "molecule" + index);
+		sensor.put("type", stimulator ? "complex_stimulator" : "sequester_inhibitor");
+		sensor.put("promoter", pick("promoter", gates + sensors + index));
+		sensor.put("parameters", array(parameter("signal_low", 0.001 + random.nextDouble() * 0.1),
+				parameter("signal_high", 1.0 + random.nextDouble() * 5.0),
+				parameter("alpha", random.nextDouble()), parameter("beta", random.nextDouble())));
+		sensor.put("parts", array(pick("promoter", gates + index), pick("ribozyme", gates + index),
+				pick("rbs", gates + index), cds, pick("terminator", gates + index)));
+		return sensor;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject reporter(int index) {
+		int offset = gates + sensors + index;
+		String cds = pick("cds", offset);
+		JSONObject reporter = record("output_reporters");
+		reporter.put("name", cds + "_reporter" + index);
+		reporter.put("parts", array(pick("ribozyme", offset), pick("rbs", offset), cds, pick("terminator", offset)));
+		return reporter;
+	}
+
+	/**
+	 * @return a motif of one to six NOT and NOR gates over up to three inputs, ending in output y
+	 */
+	@SuppressWarnings("unchecked")
+	private JSONObject motif() {
+		String[] names = { "a", "b", "c" };
+		int inputs = 1 + random.nextInt(names.length);
+		List<String> wires = new ArrayList<String>(Arrays.asList(names).subList(0, inputs));
+		int size = 1 + random.nextInt(6);
+		JSONArray netlist = new JSONArray();
+		for (int i = 0; i < size; i++) {
+			String wire = i == size - 1 ? "y" : "w" + i;
+			String in1 = wires.get(random.nextInt(wires.size()));
+			if (random.nextBoolean()) {
+				netlist.add("NOT(" + wire + "," + in1 + ")");
+			} else {
+				netlist.add("NOR(" + wire + "," + in1 + "," + wires.get(random.nextInt(wires.size())) + ")");
+			}
+			wires.add(wire);
+		}
+		JSONObject motif = record("motif_library");
+		motif.put("inputs", array((Object[])Arrays.copyOf(names, inputs)));
+		motif.put("outputs", array("y"));
+		motif.put("netlist", netlist);
+		return motif;
+	}
+
+	private static int count(HashMap<String,String> options, String name, int defaultValue) {
+		if (!options.containsKey(name)) {
+			return defaultValue;
+		}
+		int value = Integer.parseInt(options.get(name));
+		if (value < 0) {
+			throw new IllegalArgumentException("--" + name + " must not be negative");
+		}
+		return value;
+	}
+
+	public static void main(String[] args) throws IOException, ParseException {
+		HashMap<String,String> options = new HashMap<String,String>();
+		args = Cello2SBOL.parseOptions(args, options);
+		if (args.length != 1) {
+			System.err.println("Usage: UCFGenerator [--parts=n] [--gates=n] [--sensors=n] [--reporters=n] [--motifs=n] "
+					+ "[--cytometry-points=n] [--seed=n] [--template=resource] output.UCF.json");
+			System.exit(1);
+		}
+		UCFGenerator generator = new UCFGenerator();
+		generator.setParts(count(options, "parts", generator.parts));
+		generator.setGates(count(options, "gates", generator.gates));
+		generator.setSensors(count(options, "sensors", generator.sensors));
+		generator.setReporters(count(options, "reporters", generator.reporters));
+		generator.setMotifs(count(options, "motifs", generator.motifs));
+		generator.setCytometryPoints(count(options, "cytometry-points", generator.cytometryPoints));
+		if (options.containsKey("seed")) {
+			generator.setSeed(Long.parseLong(options.get("seed")));
+		}
+		if (options.containsKey("template")) {
+			generator.setTemplate(options.get("template"));
+		}
+		generator.generate(args[0]);
+	}
+}
@@ -0,0 +1,137 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.synbiohub.frontend.SynBioHubException;
+import org.synbiohub.frontend.SynBioHubFrontend;
+
+/**
+ * Holds the UCF records that are uploaded as attachments. Records below the threshold are kept in memory;
+ * larger ones are copied from the UCF file into a temporary directory private to this run, which is removed
+ * when the spool is closed. File names are made unique within the run, so a collection that appears more
+ * than once gets a numbered name.
+ */
+public class AttachmentSpool implements Closeable {
+
+	public static final long DEFAULT_THRESHOLD = 1L << 20;
+
+	public static class SpooledAttachment {
+		private final String fileName;
+		private final byte[] bytes;
+		private final File file;
+
+		SpooledAttachment(String fileName, byte[] bytes, File file) {
+			this.fileName = fileName;
+			this.bytes = bytes;
+			this.file = file;
+		}
+
+		public String getFileName() {
+			return fileName;
+		}
+
+		public boolean isInMemory() {
+			return bytes != null;
+		}
+
+		public long getLength() {
+			return bytes != null ? bytes.length : file.length();
+		}
+
+		/**
+		 * Attach the payload to the target under its file name.
+		 */
+		public void attach(SynBioHubFrontend sbh, URI target) throws SynBioHubException, FileNotFoundException {
+			if (bytes != null) {
+				sbh.attachFile(target, new ByteArrayInputStream(bytes), fileName);
+			} else {
+				sbh.attachFile(target, file);
+			}
+		}
+	}
+
+	private final File directory;
+	private final long threshold;
+	private final HashMap<String,Integer> names = new HashMap<String,Integer>();
+	private final List<File> files = new ArrayList<File>();
+
+	/**
+	 * @param parent directory in which the private directory of this run is created
+	 * @param threshold largest payload, in bytes, that is kept in memory
+	 */
+	public AttachmentSpool(File parent, long threshold) throws IOException {
+		if (!parent.exists()) {
+			parent.mkdirs();
+		}
+		this.directory = Files.createTempDirectory(parent.toPath(), "ucf2sbol-").toFile();
+		this.threshold = threshold;
+	}
+
+	public SpooledAttachment spool(UCFIndex index, UCFIndex.Entry entry, String name) throws IOException {
+		String fileName = uniqueName(name);
+		if (entry.getLength() <= threshold) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream((int)entry.getLength());
+			index.transferTo(entry, Channels.newChannel(bytes));
+			return new SpooledAttachment(fileName, bytes.toByteArray(), null);
+		}
+		File file = newFile(fileName);
+		index.extract(entry, file);
+		return new SpooledAttachment(fileName, null, file);
+	}
+
+	/**
+	 * Spool several records as a single JSON array.
+	 */
+	public SpooledAttachment spool(UCFIndex index, List<UCFIndex.Entry> entries, String name) throws IOException {
+		String fileName = uniqueName(name);
+		long length = 2 + Math.max(0, entries.size() - 1);
+		for (UCFIndex.Entry entry : entries) {
+			length += entry.getLength();
+		}
+		if (length <= threshold) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream((int)length);
+			index.transferTo(entries, Channels.newChannel(bytes));
+			return new SpooledAttachment(fileName, bytes.toByteArray(), null);
+		}
+		File file = newFile(fileName);
+		index.extract(entries, file);
+		return new SpooledAttachment(fileName, null, file);
+	}
+
+	/**
+	 * Delete the files spilled by this run and the private directory.
+	 */
+	public synchronized void close() {
+		for (File file : files) {
+			file.delete();
+		}
+		files.clear();
+		directory.delete();
+	}
+
+	private synchronized File newFile(String fileName) {
+		File file = new File(directory, fileName);
+		files.add(file);
+		return file;
+	}
+
+	private synchronized String uniqueName(String name) {
+		Integer count = names.get(name);
+		names.put(name, count == null ? 1 : count + 1);
+		if (count == null) {
+			return name + ".json";
+		}
+		return name + "_" + count + ".json";
+	}
+}
@@ -0,0 +1,203 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.synbiohub.frontend.SynBioHubException;
+import org.synbiohub.frontend.SynBioHubFrontend;
+
+/**
+ * Uploads attachments to SynBioHub on a bounded pool of workers. Each worker has its own logged in
+ * frontend, since a frontend only keeps a couple of connections to the server open. A failed upload is
+ * retried with exponential backoff, and every attachment gets a result instead of the first failure
+ * ending the run. Attachments recorded in the publish journal are skipped, and each completed upload
+ * is recorded there.
+ */
+public class AttachmentUploader {
+
+	private static final long INITIAL_BACKOFF = 500;
+
+	public static class Result {
+		private final URI target;
+		private final String fileName;
+		private final long length;
+		private final int attempts;
+		private final Exception error;
+
+		Result(URI target, String fileName, long length, int attempts, Exception error) {
+			this.target = target;
+			this.fileName = fileName;
+			this.length = length;
+			this.attempts = attempts;
+			this.error = error;
+		}
+
+		public URI getTarget() {
+			return target;
+		}
+
+		public String getFileName() {
+			return fileName;
+		}
+
+		/**
+		 * @return the number of bytes in the attachment
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * @return the number of upload attempts, 0 if the attachment was skipped
+		 */
+		public int getAttempts() {
+			return attempts;
+		}
+
+		/**
+		 * @return the error of the last attempt, or null if the upload succeeded
+		 */
+		public Exception getError() {
+			return error;
+		}
+
+		public boolean isSuccess() {
+			return error == null;
+		}
+	}
+
+	private final ExecutorService pool;
+	private final BlockingQueue<SynBioHubFrontend> frontends;
+	private final int retries;
+	private final PublishJournal journal;
+	private final List<Future<Result>> futures = new ArrayList<Future<Result>>();
+
+	public AttachmentUploader(String databaseURL, String databasePrefix, String loginEmail, String password,
+			int workers, int retries) throws SynBioHubException {
+		this(databaseURL, databasePrefix, loginEmail, password, workers, retries, null);
+	}
+
+	/**
+	 * @param journal the journal of the publish, or null
+	 */
+	public AttachmentUploader(String databaseURL, String databasePrefix, String loginEmail, String password,
+			int workers, int retries, PublishJournal journal) throws SynBioHubException {
+		this.pool = Executors.newFixedThreadPool(workers);
+		this.frontends = new ArrayBlockingQueue<SynBioHubFrontend>(workers);
+		this.retries = retries;
+		this.journal = journal;
+		for (int i = 0; i < workers; i++) {
+			SynBioHubFrontend sbh = new SynBioHubFrontend(databaseURL,databasePrefix);
+			FlightEvents.SynBioHubCall call = FlightEvents.beginCall();
+			boolean loggedIn = false;
+			try {
+				sbh.login(loginEmail, password);
+				loggedIn = true;
+			} finally {
+				FlightEvents.commit(call, "login", databaseURL, -1, 0, loggedIn);
+			}
+			frontends.add(sbh);
+		}
+	}
+
+	/**
+	 * @return the journal step of attaching a file to a target
+	 */
+	public static String step(URI target, String fileName) {
+		return PublishJournal.step("attach", target.toString(), fileName);
+	}
+
+	/**
+	 * Queue a spooled attachment to be attached to the target. An attachment the journal records as
+	 * uploaded by an earlier run gets a result with no attempts.
+	 */
+	public void submit(final URI target, final AttachmentSpool.SpooledAttachment attachment) {
+		if (journal != null && journal.isDone(step(target, attachment.getFileName()))) {
+			FutureTask<Result> skipped = new FutureTask<Result>(new Callable<Result>() {
+				public Result call() {
+					return new Result(target, attachment.getFileName(), attachment.getLength(), 0, null);
+				}
+			});
+			skipped.run();
+			futures.add(skipped);
+			return;
+		}
+		futures.add(pool.submit(new Callable<Result>() {
+			public Result call() throws InterruptedException {
+				return upload(target, attachment);
+			}
+		}));
+	}
+
+	/**
+	 * Wait for every queued upload and shut the workers down.
+	 *
+	 * @return the results in the order the uploads were submitted
+	 */
+	public List<Result> await() throws InterruptedException {
+		pool.shutdown();
+		List<Result> results = new ArrayList<Result>();
+		for (Future<Result> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Cancel the uploads that have not finished and wait for the workers to stop, so that no attachment
+	 * is read after the spool is closed. Does nothing after await has returned.
+	 */
+	public void shutdown() throws InterruptedException {
+		pool.shutdownNow();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	private Result upload(URI target, AttachmentSpool.SpooledAttachment attachment) throws InterruptedException {
+		String fileName = attachment.getFileName();
+		SynBioHubFrontend sbh = frontends.take();
+		try {
+			long backoff = INITIAL_BACKOFF;
+			for (int attempt = 1; ; attempt++) {
+				FlightEvents.SynBioHubCall call = FlightEvents.beginCall();
+				boolean attached = false;
+				try {
+					attachment.attach(sbh, target);
+					attached = true;
+					if (journal != null) {
+						journal.record(step(target, fileName));
+					}
+					return new Result(target, fileName, attachment.getLength(), attempt, null);
+				} catch (IOException e) {
+					return new Result(target, fileName, attachment.getLength(), attempt, e);
+				} catch (RuntimeException e) {
+					return new Result(target, fileName, attachment.getLength(), attempt, e);
+				} catch (SynBioHubException e) {
+					if (attempt > retries) {
+						return new Result(target, fileName, attachment.getLength(), attempt, e);
+					}
+				} finally {
+					FlightEvents.commit(call, "attachFile", target, attachment.getLength(), 0, attached);
+				}
+				Thread.sleep(backoff);
+				backoff *= 2;
+			}
+		} finally {
+			frontends.put(sbh);
+		}
+	}
+}
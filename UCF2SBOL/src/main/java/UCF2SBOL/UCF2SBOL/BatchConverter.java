@@ -0,0 +1,312 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.sbolstandard.core2.SBOLDocument;
+
+/**
+ * Converts many UCF files in one JVM on a fixed pool of workers, writing one SBOL file per UCF file
+ * to the output directory. The input is either a directory, whose *.json files are converted in name
+ * order, or a manifest that lists one UCF file per line relative to the manifest.
+ */
+public class BatchConverter {
+
+	public static class Result {
+		private final File file;
+		private final File output;
+		private final int topLevels;
+		private final long millis;
+		private final List<String> errors;
+
+		Result(File file, File output, int topLevels, long millis, List<String> errors) {
+			this.file = file;
+			this.output = output;
+			this.topLevels = topLevels;
+			this.millis = millis;
+			this.errors = errors;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public File getOutput() {
+			return output;
+		}
+
+		public int getTopLevels() {
+			return topLevels;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		public List<String> getErrors() {
+			return errors;
+		}
+
+		public boolean isSuccess() {
+			return errors.isEmpty();
+		}
+	}
+
+	private final int workers;
+	private final File outputDir;
+	private final HashMap<String,String> options;
+	private ParallelValidator validator = null;
+	// Shared by every file of a batch
+	private String createdDate;
+
+	public BatchConverter(int workers, File outputDir, HashMap<String,String> options) {
+		this.workers = workers;
+		this.outputDir = outputDir;
+		this.options = options;
+	}
+
+	/**
+	 * @return the UCF files named by a directory or a manifest
+	 */
+	public static List<File> listFiles(File batch) throws IOException {
+		List<File> files = new ArrayList<File>();
+		if (batch.isDirectory()) {
+			File[] jsonFiles = batch.listFiles(new FilenameFilter() {
+				public boolean accept(File dir, String name) {
+					return name.endsWith(".json");
+				}
+			});
+			for (File file : jsonFiles) {
+				files.add(file);
+			}
+			Collections.sort(files);
+			return files;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(batch),
+				StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				File file = new File(line);
+				if (!file.isAbsolute()) {
+					file = new File(batch.getAbsoluteFile().getParentFile(), line);
+				}
+				files.add(file);
+			}
+		} finally {
+			reader.close();
+		}
+		return files;
+	}
+
+	/**
+	 * Convert the files, printing a line per file as it completes and a throughput summary at the end.
+	 *
+	 * @return the results in the order of the files
+	 * @throws IllegalArgumentException if two files would be written to the same output
+	 */
+	public List<Result> convert(List<File> files) throws InterruptedException {
+		checkOutputNames(files);
+		if (!outputDir.exists()) {
+			outputDir.mkdirs();
+		}
+		createdDate = Cello2SBOL.now();
+		if (options.containsKey("validation-workers")) {
+			validator = new ParallelValidator(Integer.parseInt(options.get("validation-workers")));
+		}
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+		for (final File file : files) {
+			futures.add(pool.submit(new Callable<Result>() {
+				public Result call() {
+					Result result = convert(file);
+					print(result);
+					return result;
+				}
+			}));
+		}
+		pool.shutdown();
+		List<Result> results = new ArrayList<Result>();
+		for (int i = 0; i < files.size(); i++) {
+			try {
+				results.add(futures.get(i).get());
+			} catch (ExecutionException e) {
+				Result result = new Result(files.get(i), null, 0, 0,
+						Collections.singletonList(String.valueOf(e.getCause())));
+				print(result);
+				results.add(result);
+			}
+		}
+		if (validator != null) {
+			validator.shutdown();
+		}
+		summarize(results, System.nanoTime() - start);
+		return results;
+	}
+
+	Result convert(File file) {
+		long start = System.nanoTime();
+		File output = new File(outputDir, baseName(file) + ".xml");
+		List<String> errors = new ArrayList<String>();
+		int topLevels = 0;
+		try {
+			SBOLDocument document = null;
+			IncrementalConverter incremental = null;
+			SnapshotCache cache = null;
+			if (options.containsKey("cache")) {
+				cache = new SnapshotCache(new File(options.get("cache")));
+				document = cache.load(file.getPath());
+			}
+			boolean cached = document != null;
+			if (cached) {
+				// The hashes of an earlier incremental run no longer describe the output
+				IncrementalConverter.hashFile(output).delete();
+			} else if (options.containsKey("incremental")) {
+				incremental = new IncrementalConverter(IncrementalConverter.hashFile(output));
+				StageMetrics.Stage stage = Cello2SBOL.metrics.start("incremental_convert");
+				document = incremental.convert(file.getPath(), incremental.load(output), createdDate);
+				stage.end();
+				Cello2SBOL.metrics.count("top_levels", incremental.getCreated().size());
+			} else {
+				document = Cello2SBOL.convert(file.getPath(), options, createdDate);
+			}
+			topLevels = document.getTopLevels().size();
+			// A snapshot was validated when it was stored
+			if (!cached) {
+				Set<URI> changed = null;
+				if (incremental != null) {
+					changed = new HashSet<URI>(incremental.getCreated());
+					changed.add(Cello2SBOL.activityURI);
+				}
+				String mode = options.get("validate");
+				StageMetrics.Stage stage = Cello2SBOL.metrics.start("validate");
+				errors.addAll(IncrementalValidator.validate(document, changed, mode, validator).getErrors());
+				stage.end();
+				if (cache != null && errors.isEmpty() && !IncrementalValidator.NONE.equals(mode)) {
+					cache.store(file.getPath(), document);
+				}
+			}
+			if (errors.isEmpty()) {
+				StageMetrics.Stage stage = Cello2SBOL.metrics.start("write");
+				document.write(output);
+				stage.end();
+				if (incremental != null) {
+					incremental.save();
+				}
+			}
+		} catch (Exception e) {
+			errors.add(e.toString());
+		}
+		return new Result(file, output, topLevels, (System.nanoTime() - start) / 1000000, errors);
+	}
+
+	private static synchronized void print(Result result) {
+		if (result.isSuccess()) {
+			System.out.println(result.getFile() + " -> " + result.getOutput() + " (" + result.getTopLevels() +
+					" top-levels, " + result.getMillis() + " ms)");
+		} else {
+			System.out.println(result.getFile() + " failed:");
+			for (String error : result.getErrors()) {
+				System.out.println("  " + error);
+			}
+		}
+	}
+
+	private static void summarize(List<Result> results, long nanos) {
+		int failed = 0;
+		long bytes = 0;
+		long topLevels = 0;
+		for (Result result : results) {
+			if (!result.isSuccess()) {
+				failed++;
+			}
+			bytes += result.getFile().length();
+			topLevels += result.getTopLevels();
+		}
+		double seconds = nanos / 1e9;
+		System.out.println(String.format("Converted %d files (%d failed) in %.2f s: %.2f files/s, %.2f MB/s, %.0f top-levels/s",
+				results.size(), failed, seconds, results.size() / seconds, bytes / 1048576.0 / seconds,
+				topLevels / seconds));
+	}
+
+	/**
+	 * Check that no two files have the same output, and so the same hashes file, before any worker
+	 * starts writing.
+	 *
+	 * @throws IllegalArgumentException naming the files that share an output
+	 */
+	static void checkOutputNames(List<File> files) {
+		HashMap<String,File> outputs = new HashMap<String,File>();
+		StringBuilder message = null;
+		for (File file : files) {
+			File previous = outputs.put(baseName(file), file);
+			if (previous != null) {
+				if (message == null) {
+					message = new StringBuilder("UCF files with the same output name, rename or convert them separately:");
+				}
+				message.append("\n ").append(previous).append(" and ").append(file).append(" -> ")
+						.append(baseName(file)).append(".xml");
+			}
+		}
+		if (message != null) {
+			throw new IllegalArgumentException(message.toString());
+		}
+	}
+
+	private static String baseName(File file) {
+		String name = file.getName();
+		if (name.endsWith(".json")) {
+			name = name.substring(0, name.length() - ".json".length());
+		}
+		if (name.endsWith(".UCF")) {
+			name = name.substring(0, name.length() - ".UCF".length());
+		}
+		return name;
+	}
+
+	/**
+	 * Run the batch described by the --batch, --workers and --output-dir options.
+	 *
+	 * @return true if every file converted
+	 */
+	public static boolean run(HashMap<String,String> options) throws IOException, InterruptedException {
+		int workers = Runtime.getRuntime().availableProcessors();
+		if (options.containsKey("workers")) {
+			workers = Integer.parseInt(options.get("workers"));
+		}
+		File outputDir = new File(".");
+		if (options.containsKey("output-dir")) {
+			outputDir = new File(options.get("output-dir"));
+		}
+		List<File> files = listFiles(new File(options.get("batch")));
+		BatchConverter converter = new BatchConverter(workers, outputDir, options);
+		for (Result result : converter.convert(files)) {
+			if (!result.isSuccess()) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,18 +1,20 @@
 package UCF2SBOL.UCF2SBOL;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
 
 import javax.xml.namespace.QName;
@@ -20,7 +22,6 @@ import javax.xml.namespace.QName;
 import org.joda.time.DateTime;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.sbolstandard.core2.AccessType;
 import org.sbolstandard.core2.Activity;
@@ -33,7 +34,6 @@ import org.sbolstandard.core2.ModuleDefinition;
 import org.sbolstandard.core2.OrientationType;
 import org.sbolstandard.core2.SBOLConversionException;
 import org.sbolstandard.core2.SBOLDocument;
-import org.sbolstandard.core2.SBOLValidate;
 import org.sbolstandard.core2.SBOLValidationException;
 import org.sbolstandard.core2.Sequence;
 import org.sbolstandard.core2.SequenceAnnotation;
@@ -53,8 +53,23 @@ public class Cello2SBOL {
 	static String dcTermsNS = "http://purl.org/dc/terms/";
 	static String celloNS = "http://cellocad.org/Terms/cello#";
 
+	static final Set<String> conversionCollections = new HashSet<String>(Arrays.asList(
+			"parts", "gate_parts", "input_sensors", "output_reporters", "gates", "response_functions"));
+
+	static final String activityId = "CelloUCF2sbol_Activity";
+	static final String activityName = "Cello UCF to SBOL conversion";
+	static final String activityDescription = "Conversion of the Cello UCF parts and metadata to SBOL 2 documents.";
+	static final String agentId = "CelloUCF2SBOL";
+	static final String agentName = "Cello UCF to SBOL";
+	static final String agentDescription = "A script to convert Cello UCF parts and metadata to SBOL 2 documents.";
+	static final String agentSource = "https://github.com/MyersResearchGroup/UCF2SBOL";
+	static final String[] agentCreators = { "Prashant Vaidyanathan", "Chris J. Myers" };
+
+	static PartTypeRegistry partTypes = PartTypeRegistry.getDefault();
+
 	static URI activityURI;
-	static String createdDate;
+	static boolean slimProvenance;
+	static StageMetrics metrics = new StageMetrics();
 	
 	private static void createSensor(SBOLDocument doc,String id,ComponentDefinition prom,
 			ComponentDefinition riboJ,ComponentDefinition rbs,ComponentDefinition cds,ComponentDefinition term) 
@@ -331,8 +346,6 @@ public class Cello2SBOL {
 	{
 		ComponentDefinition cds = doc.createComponentDefinition(display, version, type);
 		cds.setName(display);
-		cds.addWasGeneratedBy(activityURI);
-		cds.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 		
 		if(role == null)
 		{
@@ -345,76 +358,41 @@ public class Cello2SBOL {
 		return cds;
 	}
 		
-	private static URI getRole(String type) {
-		if (type.equals("ribozyme")) {
-	        return URI.create(so + "SO:0001977");
-	    }
-	    else if (type.equals("scar")) {
-	        return URI.create(so + "SO:0001953");
-	    }
-	    else if (type.equals("cds")) {
-	        return URI.create(so + "SO:0000316");
-	    }
-	    else if (type.equals("promoter")) {
-	        return URI.create(so + "SO:0000167");
-	    }
-	    else if (type.equals("rbs")) {
-	        return URI.create(so + "SO:0000139");
-	    }
-	    else if (type.equals("terminator")) {
-	        return URI.create(so + "SO:0000141");
-	    } else if (type.equals("grna")) {
-	        return URI.create(so + "SO:0001264");
-	    } else if (type.equals("UAS")) {
-	        return URI.create(so + "SO:0001678");
-	    } else if (type.equals("LinkingSequence")) {
-	        return URI.create(so + "SO:0001678");
-	    } else if (type.equals("TataBox")) {
-	        return URI.create(so + "SO:0000174");
-	    } else if (type.equals("tss")) {
-	        return URI.create(so + "SO:0000315");
-	    } else if (type.equals("Kozak")) {
-	        return URI.create(so + "SO:0001647");
-	    } else if (type.equals("Codon")) {
-	        return URI.create(so + "SO:0000360");
-	    } else if (type.equals("operator")) {
-	        return URI.create(so + "SO:0000057");
-	    } else if (type.equals("backbone")) {
-	        return URI.create(so + "SO:0000755");
-	    } else if (type.equals("spacer")) {
-	    	return URI.create(so + "SO:0002223");
-	    } else {
-	        System.err.println("Part Type " + type + " not found");
-	        return null;
-	    }
+	/**
+	 * @return the Sequence Ontology role of a part type
+	 * @throws IllegalArgumentException if the type is not in the registry
+	 */
+	static URI getRole(String type) {
+		return partTypes.getRole(type);
 	}
 
-	private static void convertPartsToSBOL(SBOLDocument document,HashMap<String,JSONObject> partsMap) throws SBOLValidationException {
-		for (JSONObject part : partsMap.values()) {
+	static void convertPartsToSBOL(SBOLDocument document,Collection<JSONObject> partsArr) throws SBOLValidationException {
+		for (JSONObject part : partsArr) {
+			FlightEvents.RecordConversion event = FlightEvents.beginRecord();
 			String name = (String)part.get("name");
 			name = name.replace("-", "_");
-			System.out.println(name);
 			String dnasequence = (String)part.get("dnasequence");
 			Sequence sequence = document.createSequence(name + "_sequence", version, dnasequence, Sequence.IUPAC_DNA);
 			sequence.setName(name+"_sequence");
-			sequence.addWasGeneratedBy(activityURI);
-			sequence.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 
 			ComponentDefinition componentDefinition = 
 					document.createComponentDefinition(name, version, ComponentDefinition.DNA_REGION);
 			componentDefinition.setName(name);
-			componentDefinition.addWasGeneratedBy(activityURI);
-			componentDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 			String partType = (String)part.get("type");
 			componentDefinition.addRole(getRole(partType));
 			componentDefinition.addSequence(sequence);
 			
+			// The sequence and the part, and for a product its definition and production and degradation modules
+			int topLevels = 2;
 			if (partType.equals("cds")) {
 				createProtein(document,name,componentDefinition);
+				topLevels += 3;
 			}
 			if (partType.equals("grna")) {
 				createRNA(document,name,componentDefinition);
+				topLevels += 3;
 			}
+			FlightEvents.commit(event, "parts", name, topLevels);
 		}
 	}
 	
@@ -423,14 +401,10 @@ public class Cello2SBOL {
 		ComponentDefinition proteinComponentDefinition =
 				document.createComponentDefinition(cdsId+"_protein", version, ComponentDefinition.PROTEIN);
 		proteinComponentDefinition.setName(cdsId+"_protein");
-		proteinComponentDefinition.addWasGeneratedBy(activityURI);
-		proteinComponentDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 
 		ModuleDefinition moduleDefinition = 
 				document.createModuleDefinition(cdsId+"_protein_production", version);
 		moduleDefinition.setName(cdsId+"_protein_production");
-		moduleDefinition.addWasGeneratedBy(activityURI);
-		moduleDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 		moduleDefinition.createFunctionalComponent(cdsId, AccessType.PUBLIC, 
 				cds.getIdentity(), DirectionType.NONE);
 		moduleDefinition.createFunctionalComponent(cdsId+"_protein", AccessType.PUBLIC, 
@@ -443,8 +417,6 @@ public class Cello2SBOL {
 		moduleDefinition = 
 				document.createModuleDefinition(cdsId+"_protein_degradation", version);
 		moduleDefinition.setName(cdsId+"_protein_degradation");
-		moduleDefinition.addWasGeneratedBy(activityURI);
-		moduleDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 		moduleDefinition.createFunctionalComponent(cdsId+"_protein", AccessType.PUBLIC, 
 				proteinComponentDefinition.getIdentity(), DirectionType.NONE);
 		String interactionId = cdsId + "_degradation_interaction";
@@ -459,14 +431,10 @@ public class Cello2SBOL {
 				document.createComponentDefinition(rnaId+"_rna", version, ComponentDefinition.RNA_MOLECULE);
 		rnaComponentDefinition.addRole(URI.create(so + "SO:0001998"));
 		rnaComponentDefinition.setName(rnaId+"_rna");
-		rnaComponentDefinition.addWasGeneratedBy(activityURI);
-		rnaComponentDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 
 		ModuleDefinition moduleDefinition = 
 				document.createModuleDefinition(rnaId+"_rna_production", version);
 		moduleDefinition.setName(rnaId+"_rna_production");
-		moduleDefinition.addWasGeneratedBy(activityURI);
-		moduleDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 		moduleDefinition.createFunctionalComponent(rnaId, AccessType.PUBLIC, 
 				rna.getIdentity(), DirectionType.NONE);
 		moduleDefinition.createFunctionalComponent(rnaId+"_protein", AccessType.PUBLIC, 
@@ -479,8 +447,6 @@ public class Cello2SBOL {
 		moduleDefinition = 
 				document.createModuleDefinition(rnaId+"_rna_degradation", version);
 		moduleDefinition.setName(rnaId+"_rna_degradation");
-		moduleDefinition.addWasGeneratedBy(activityURI);
-		moduleDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 		moduleDefinition.createFunctionalComponent(rnaId+"_rna", AccessType.PUBLIC, 
 				rnaComponentDefinition.getIdentity(), DirectionType.NONE);
 		String interactionId = rnaId + "_degradation_interaction";
@@ -488,13 +454,11 @@ public class Cello2SBOL {
 		interaction.createParticipation(rnaId+"_rna", rnaId+"_rna",  SystemsBiologyOntology.REACTANT);
 	}
 	
-	private static void createInhibition(SBOLDocument document,String inhibitor,String inhibited,
+	static void createInhibition(SBOLDocument document,String inhibitor,String inhibited,
 			Double ymin,Double ymax,Double alpha,Double beta) throws SBOLValidationException 
 	{
 		ModuleDefinition moduleDefinition = 
 				document.createModuleDefinition(inhibitor+"_"+inhibited+"_repression", version);
-		moduleDefinition.addWasGeneratedBy(activityURI);
-		moduleDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 		moduleDefinition.createFunctionalComponent(inhibitor, AccessType.PUBLIC, 
 				inhibitor, version, DirectionType.NONE);
 		moduleDefinition.createFunctionalComponent(inhibited, AccessType.PUBLIC, 
@@ -519,13 +483,11 @@ public class Cello2SBOL {
 		}
 	}
 	
-	private static void createActivation(SBOLDocument document,String activator,String promoter,
+	static void createActivation(SBOLDocument document,String activator,String promoter,
 			Double ymin,Double ymax,Double alpha,Double beta) throws SBOLValidationException 
 	{
 		ModuleDefinition moduleDefinition = 
 				document.createModuleDefinition(activator+"_"+promoter+"_activation", version);
-		moduleDefinition.addWasGeneratedBy(activityURI);
-		moduleDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 		moduleDefinition.createFunctionalComponent(activator, AccessType.PUBLIC, 
 				activator, version, DirectionType.NONE);
 		moduleDefinition.createFunctionalComponent(promoter, AccessType.PUBLIC, 
@@ -550,19 +512,15 @@ public class Cello2SBOL {
 		}
 	}
 	
-	private static void createComplex(SBOLDocument document,String reactant1,String reactant2) throws SBOLValidationException 
+	static void createComplex(SBOLDocument document,String reactant1,String reactant2) throws SBOLValidationException 
 	{
 		String complex = reactant1 + "_" + reactant2;
 		ComponentDefinition complexComponentDefinition = 
 				document.createComponentDefinition(complex, version, ComponentDefinition.COMPLEX);
 		complexComponentDefinition.setName(complex);
-		complexComponentDefinition.addWasGeneratedBy(activityURI);
-		complexComponentDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 
 		ModuleDefinition moduleDefinition = 
 				document.createModuleDefinition(complex+"_complex_formation", version);
-		moduleDefinition.addWasGeneratedBy(activityURI);
-		moduleDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 		moduleDefinition.createFunctionalComponent(reactant1, AccessType.PUBLIC, 
 				reactant1, version, DirectionType.NONE);
 		moduleDefinition.createFunctionalComponent(reactant2, AccessType.PUBLIC, 
@@ -578,8 +536,6 @@ public class Cello2SBOL {
 		moduleDefinition = 
 				document.createModuleDefinition(complex+"_degradation", version);
 		moduleDefinition.setName(complex+"_degradation");
-		moduleDefinition.addWasGeneratedBy(activityURI);
-		moduleDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 		moduleDefinition.createFunctionalComponent(complex, AccessType.PUBLIC, 
 				complexComponentDefinition.getIdentity(), DirectionType.NONE);
 		String interactionId = complex + "_degradation_interaction";
@@ -587,17 +543,16 @@ public class Cello2SBOL {
 		interaction.createParticipation(complex, complex,  SystemsBiologyOntology.REACTANT);
 	}
 
-	private static void convertGatePartsToSBOL(SBOLDocument document,HashSet<JSONObject> gate_partsArr,
+	static void convertGatePartsToSBOL(SBOLDocument document,PartIndex partIndex,InteractionRegistry interactions,Collection<JSONObject> gate_partsArr,
 			HashMap<String,JSONObject> gatesMap,HashMap<String,JSONObject> responseMap) throws SBOLValidationException {
 		for (JSONObject gate : gate_partsArr) {
+			FlightEvents.RecordConversion event = FlightEvents.beginRecord();
 			String gate_name = (String)gate.get("gate_name");
 			ComponentDefinition componentDefinition = 
 					document.createComponentDefinition(gate_name, version, ComponentDefinition.DNA_REGION);
 			componentDefinition.setName(gate_name);
 			componentDefinition.addRole(SequenceOntology.ENGINEERED_REGION);
-			componentDefinition.addWasGeneratedBy(activityURI);
 			
-			componentDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 	        componentDefinition.createAnnotation(new QName(celloNS,"family","cello"), 
 	        		(String)gatesMap.get(gate_name).get("system"));
 	        //componentDefinition.addUriAnnotation(regulatorSO, gatesMap[gpartName].regulator);
@@ -609,8 +564,10 @@ public class Cello2SBOL {
 	        		(String)gatesMap.get(gate_name).get("color_hexcode"));
 	        componentDefinition.createAnnotation(new QName(celloNS,"response_function","cello"), 
 	        		(String)responseMap.get(gate_name).get("equation"));
-	        componentDefinition.createAnnotation(new QName(celloNS,"tandem_efficiency_factor","cello"), 
-	        		(String)responseMap.get(gate_name).get("tandem_efficiency_factor"));
+	        if (responseMap.get(gate_name).get("tandem_efficiency_factor") != null) {
+	        	componentDefinition.createAnnotation(new QName(celloNS,"tandem_efficiency_factor","cello"), 
+	        			(String)responseMap.get(gate_name).get("tandem_efficiency_factor"));
+	        }
 	        JSONArray parameters = (JSONArray)responseMap.get(gate_name).get("parameters");
 	        for (Object obj : parameters) {
 	        	String name = (String)((JSONObject)obj).get("name");
@@ -627,7 +584,7 @@ public class Cello2SBOL {
 	        }
 			
 			JSONArray expression_cassettes = (JSONArray) gate.get("expression_cassettes");
-			String seq = "";
+			List<String> seqParts = new ArrayList<String>();
 			for (Object obj : expression_cassettes) {
 				int annotationCount = 0;
 				int start = 1;
@@ -639,11 +596,11 @@ public class Cello2SBOL {
 				JSONArray cassette_parts = (JSONArray)expression_cassette.get("cassette_parts");
 				for (Object obj2 : cassette_parts) {
 					String partId = (String)obj2;
-					ComponentDefinition partComponentDefinition = document.getComponentDefinition(partId, version);
-					String cass_seq = document.getSequence(partId+"_sequence",version).getElements();
-					seq += cass_seq;
+					PartIndex.Part part = partIndex.get(partId);
+					int cass_length = part.getLength();
+					seqParts.add(partId);
 					//currentComponent = 
-					componentDefinition.createComponent(partId, AccessType.PUBLIC, partId, version);
+					componentDefinition.createComponent(partId, AccessType.PUBLIC, part.getDefinition());
 //					if (previousComponent != null) {
 //						componentDefinition.createSequenceConstraint("constraint"+constraintCount, RestrictionType.PRECEDES,
 //								previousComponent.getIdentity(), currentComponent.getIdentity());
@@ -651,59 +608,52 @@ public class Cello2SBOL {
 //					}
 //					previousComponent = currentComponent;
 					SequenceAnnotation sa = componentDefinition.createSequenceAnnotation("annotation"+annotationCount, 
-							"range", start, start + cass_seq.length() - 1, OrientationType.INLINE);
+							"range", start, start + cass_length - 1, OrientationType.INLINE);
 					sa.setComponent(partId);
-					start += cass_seq.length();
+					start += cass_length;
 					annotationCount++;
 					
-					if (partComponentDefinition.getRoles().contains(SequenceOntology.CDS)) {
+					if (part.isCDS()) {
 						String promoter = (String)gate.get("promoter");
-						if (document.getModuleDefinition(partId+"_protein_"+promoter+"_repression", version)==null) {
-							createInhibition(document,partId+"_protein",promoter,null,null,null,null);
-						}
+						interactions.repression(part.getProteinId(),promoter,null,null,null,null);
 					}
-					if (partComponentDefinition.getRoles().contains(URI.create(so + "SO:0001264"))) {
+					if (part.isGRNA()) {
 						String promoter = (String)gate.get("promoter");
-						createComplex(document,partId+"_rna","dCAS9_Mxi1_protein");
-						if (document.getModuleDefinition(partId+"_rna_dCAS9_Mxi1_protein_"+promoter+"_repression", version)==null) {
-							createInhibition(document,partId+"_rna_dCAS9_Mxi1_protein",promoter,null,null,null,null);
-						}
+						String complex = interactions.complex(part.getRNAId(),"dCAS9_Mxi1_protein");
+						interactions.repression(complex,promoter,null,null,null,null);
 					}
 				}
 				
 			}
 			
-			Sequence sequence = document.createSequence(gate_name+"_sequence", version, seq, Sequence.IUPAC_DNA);
+			Sequence sequence = document.createSequence(gate_name+"_sequence", version, partIndex.getSequences().assemble(seqParts), Sequence.IUPAC_DNA);
 			sequence.setName(gate_name+"_sequence");
-			sequence.addWasGeneratedBy(activityURI);
-			sequence.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 			componentDefinition.addSequence(sequence);
-			
+			FlightEvents.commit(event, "gate_parts", gate_name, 2);
 		}
 	}
 
-	private static void convertInputSensorsToSBOL(SBOLDocument document,HashSet<JSONObject> input_sensorsArr) throws SBOLValidationException {
+	static void convertInputSensorsToSBOL(SBOLDocument document,PartIndex partIndex,InteractionRegistry interactions,Collection<JSONObject> input_sensorsArr) throws SBOLValidationException {
 		for (JSONObject sensor : input_sensorsArr) {
+			FlightEvents.RecordConversion event = FlightEvents.beginRecord();
 			String sensor_name = (String)sensor.get("name");
 			ComponentDefinition componentDefinition = 
 					document.createComponentDefinition(sensor_name, version, ComponentDefinition.DNA_REGION);
 			componentDefinition.setName(sensor_name);
 			componentDefinition.addRole(SequenceOntology.ENGINEERED_REGION);
-			componentDefinition.addWasGeneratedBy(activityURI);
-			componentDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 	        componentDefinition.createAnnotation(new QName(celloNS,"gateType","cello"), "input_sensor");
 					        
 			JSONArray parts = (JSONArray)sensor.get("parts");
-			String seq = "";
+			List<String> seqParts = new ArrayList<String>();
 			int annotationCount = 0;
 			int start = 1;
 			for (Object obj2 : parts) {
 				String partId = (String)obj2;
-				ComponentDefinition partComponentDefinition = document.getComponentDefinition(partId, version);
-				String cass_seq = document.getSequence(partId+"_sequence",version).getElements();
-				seq += cass_seq;
+				PartIndex.Part part = partIndex.get(partId);
+				int cass_length = part.getLength();
+				seqParts.add(partId);
 				//currentComponent = 
-				componentDefinition.createComponent(partId, AccessType.PUBLIC, partId, version);
+				componentDefinition.createComponent(partId, AccessType.PUBLIC, part.getDefinition());
 //						if (previousComponent != null) {
 //						componentDefinition.createSequenceConstraint("constraint"+constraintCount, RestrictionType.PRECEDES,
 //								previousComponent.getIdentity(), currentComponent.getIdentity());
@@ -711,12 +661,12 @@ public class Cello2SBOL {
 //					}
 //					previousComponent = currentComponent;
 				SequenceAnnotation sa = componentDefinition.createSequenceAnnotation("annotation"+annotationCount, 
-						"range", start, start + cass_seq.length() - 1, OrientationType.INLINE);
+						"range", start, start + cass_length - 1, OrientationType.INLINE);
 				sa.setComponent(partId);
-				start += cass_seq.length();
+				start += cass_length;
 				annotationCount++;
 
-				if (partComponentDefinition.getRoles().contains(SequenceOntology.CDS)) {
+				if (part.isCDS()) {
 					String promoter = (String)sensor.get("promoter");
 					String input_molecule = (String)sensor.get("input_molecule");
 					Double signal_low = (Double)sensor.get("signal_low");
@@ -724,6 +674,10 @@ public class Cello2SBOL {
 					Double alpha = null;
 					Double beta = null;
 			        JSONArray parameters = (JSONArray)sensor.get("parameters");
+			        if (parameters == null) {
+			        	// Some UCF files only have the top-level signal values
+			        	parameters = new JSONArray();
+			        }
 			        for (Object obj : parameters) {
 			        	String name = (String)((JSONObject)obj).get("name");
 			        	if (name.equals("signal_low")) {
@@ -738,48 +692,44 @@ public class Cello2SBOL {
 			        }
 
 
-					document.createComponentDefinition(input_molecule, version, ComponentDefinition.SMALL_MOLECULE);
-					createComplex(document,input_molecule,partId+"_protein");
+					interactions.smallMolecule(input_molecule);
+					String complex = interactions.complex(input_molecule,part.getProteinId());
 					if (((String)sensor.get("type")).equals("complex_stimulator")) {
-						createActivation(document,input_molecule+"_"+partId+"_protein",promoter,signal_low,signal_high,alpha,beta);
+						interactions.activation(complex,promoter,signal_low,signal_high,alpha,beta);
 					} else if (((String)sensor.get("type")).equals("sequester_inhibitor")) {
-						createInhibition(document,partId+"_protein",promoter,signal_low,signal_high,alpha,beta);
+						interactions.repression(part.getProteinId(),promoter,signal_low,signal_high,alpha,beta);
 					}
 				}
 				
 			}
 			
-			Sequence sequence = document.createSequence(sensor_name+"_sequence", version, seq, Sequence.IUPAC_DNA);
+			Sequence sequence = document.createSequence(sensor_name+"_sequence", version, partIndex.getSequences().assemble(seqParts), Sequence.IUPAC_DNA);
 			sequence.setName(sensor_name+"_sequence");
-			sequence.addWasGeneratedBy(activityURI);
-			sequence.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 			componentDefinition.addSequence(sequence);
-			
+			FlightEvents.commit(event, "input_sensors", sensor_name, 2);
 		}
 	}
 
-	private static void convertOutputReportersToSBOL(SBOLDocument document,HashSet<JSONObject> output_reportersArr) throws SBOLValidationException {
+	static void convertOutputReportersToSBOL(SBOLDocument document,PartIndex partIndex,Collection<JSONObject> output_reportersArr) throws SBOLValidationException {
 		for (JSONObject sensor : output_reportersArr) {
+			FlightEvents.RecordConversion event = FlightEvents.beginRecord();
 			String reporter_name = (String)sensor.get("name");
 			ComponentDefinition componentDefinition = 
 					document.createComponentDefinition(reporter_name, version, ComponentDefinition.DNA_REGION);
 			componentDefinition.setName(reporter_name);
 			componentDefinition.addRole(SequenceOntology.ENGINEERED_REGION);
-			componentDefinition.addWasGeneratedBy(activityURI);
-			componentDefinition.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 	        componentDefinition.createAnnotation(new QName(celloNS,"gateType","cello"), "output_reporter");
 					        
 			JSONArray parts = (JSONArray)sensor.get("parts");
-			String seq = "";
+			List<String> seqParts = new ArrayList<String>();
 			int annotationCount = 0;
 			int start = 1;
 			for (Object obj2 : parts) {
 				String partId = (String)obj2;
-				document.getComponentDefinition(partId, version);
-				String cass_seq = document.getSequence(partId+"_sequence",version).getElements();
-				seq += cass_seq;
+				int cass_length = partIndex.get(partId).getLength();
+				seqParts.add(partId);
 				//currentComponent = 
-				componentDefinition.createComponent(partId, AccessType.PUBLIC, partId, version);
+				componentDefinition.createComponent(partId, AccessType.PUBLIC, partIndex.get(partId).getDefinition());
 //						if (previousComponent != null) {
 //						componentDefinition.createSequenceConstraint("constraint"+constraintCount, RestrictionType.PRECEDES,
 //								previousComponent.getIdentity(), currentComponent.getIdentity());
@@ -787,22 +737,312 @@ public class Cello2SBOL {
 //					}
 //					previousComponent = currentComponent;
 				SequenceAnnotation sa = componentDefinition.createSequenceAnnotation("annotation"+annotationCount, 
-						"range", start, start + cass_seq.length() - 1, OrientationType.INLINE);
+						"range", start, start + cass_length - 1, OrientationType.INLINE);
 				sa.setComponent(partId);
-				start += cass_seq.length();
+				start += cass_length;
 				annotationCount++;
 				
 			}
 			
-			Sequence sequence = document.createSequence(reporter_name+"_sequence", version, seq, Sequence.IUPAC_DNA);
+			Sequence sequence = document.createSequence(reporter_name+"_sequence", version, partIndex.getSequences().assemble(seqParts), Sequence.IUPAC_DNA);
 			sequence.setName(reporter_name+"_sequence");
-			sequence.addWasGeneratedBy(activityURI);
-			sequence.createAnnotation(new QName(dcTermsNS,"created","dcTerms"), createdDate);
 			componentDefinition.addSequence(sequence);
-			
+			FlightEvents.commit(event, "output_reporters", reporter_name, 2);
 		}
 	}
 	
+	/**
+	 * Index the parts that the gates, sensors and reporters use, once the parts are converted.
+	 * 
+	 * @throws IllegalArgumentException naming the parts that are used but missing from the parts document
+	 */
+	static PartIndex indexParts(SBOLDocument partsDocument,Collection<JSONObject> gate_partsArr,
+			Collection<JSONObject> input_sensorsArr,Collection<JSONObject> output_reportersArr)
+	{
+		PartIndex partIndex = new PartIndex(partsDocument, new SequenceStore(partsDocument));
+		for (JSONObject gate : gate_partsArr) {
+			List<String> partIds = new ArrayList<String>();
+			for (Object obj : (JSONArray)gate.get("expression_cassettes")) {
+				partIds.addAll(strings((JSONArray)((JSONObject)obj).get("cassette_parts")));
+			}
+			partIndex.add((String)gate.get("gate_name"), partIds);
+		}
+		for (JSONObject sensor : input_sensorsArr) {
+			partIndex.add((String)sensor.get("name"), strings((JSONArray)sensor.get("parts")));
+		}
+		for (JSONObject reporter : output_reportersArr) {
+			partIndex.add((String)reporter.get("name"), strings((JSONArray)reporter.get("parts")));
+		}
+		partIndex.check();
+		return partIndex;
+	}
+
+	private static List<String> strings(JSONArray array)
+	{
+		List<String> strings = new ArrayList<String>();
+		for (Object obj : array) {
+			strings.add((String)obj);
+		}
+		return strings;
+	}
+
+	/**
+	 * Create an empty document with the cellocad URI prefix. Incomplete documents are used for shards 
+	 * whose references are resolved when they are merged.
+	 */
+	static SBOLDocument createDocument(boolean complete)
+	{
+		SBOLDocument document = new SBOLDocument(); 
+		document.setDefaultURIprefix(uriPrefix); 
+		document.setComplete(complete); 
+		document.setCreateDefaults(true);
+		return document;
+	}
+
+	/**
+	 * Remove "--name" and "--name=value" options from the arguments.
+	 * 
+	 * @return the remaining positional arguments
+	 */
+	static String[] parseOptions(String[] args, HashMap<String,String> options)
+	{
+		ArrayList<String> positional = new ArrayList<String>();
+		for (String arg : args) {
+			if (arg.startsWith("--")) {
+				int equals = arg.indexOf('=');
+				if (equals < 0) {
+					options.put(arg.substring(2), "true");
+				} else {
+					options.put(arg.substring(2, equals), arg.substring(equals + 1));
+				}
+			} else {
+				positional.add(arg);
+			}
+		}
+		return positional.toArray(new String[positional.size()]);
+	}
+
+	/**
+	 * Convert the parts, gates, sensors and reporters of a UCF file into a new document that also
+	 * holds the conversion Activity and Agent.
+	 *
+	 * @param createdDate the dcTerms:created date of every converted object, or of the Activity when slim
+	 */
+	static SBOLDocument convert(String pathToUCFFile, HashMap<String,String> options, String createdDate) 
+			throws SBOLValidationException, IOException, ParseException
+	{
+		SBOLDocument document = createDocument(true);
+		createActivity(document);
+		
+//		Attachment attachmentUCF = document.createAttachment("Eco1C1G1T1_UCF", version, 
+//				URI.create("https://github.com/MyersResearchGroup/UCF2SBOL/blob/master/UCF2SBOL/src/main/resources/Eco1C1G1T1.UCF.json"));
+//		activity.createUsage("UCF_File", attachmentUCF.getIdentity());
+//		document.write(System.out);
+//		if (true) {
+//			return;
+//		}
+		
+		// Parse JSON
+		HashMap<String,JSONObject> partsMap = new HashMap<String,JSONObject>();
+		HashSet<JSONObject> gate_partsArr = new HashSet<JSONObject>();
+		HashSet<JSONObject> input_sensorsArr = new HashSet<JSONObject>();
+		HashSet<JSONObject> output_reportersArr = new HashSet<JSONObject>();
+		HashMap<String,JSONObject> gatesMap = new HashMap<String,JSONObject>();
+		HashMap<String,JSONObject> responseMap = new HashMap<String,JSONObject>();
+
+		StageMetrics.Stage stage = metrics.start("parse");
+		UCFReader reader = new UCFReader(pathToUCFFile, conversionCollections);
+		JSONObject ucf;
+		while ((ucf = reader.next()) != null)
+		{
+			String collection = (String) ucf.get("collection");
+
+			if (collection.equals("parts")) {
+				partsMap.put((String)ucf.get("name"),ucf);
+			}
+			else if (collection.equals("gate_parts")) {
+				gate_partsArr.add(ucf);
+			}
+			else if (collection.equals("input_sensors")) {
+				input_sensorsArr.add(ucf);
+			}
+			else if (collection.equals("output_reporters")) {
+				output_reportersArr.add(ucf);
+			}
+			else if (collection.equals("gates")) {
+				gatesMap.put((String)ucf.get("gate_name"),ucf);
+			}
+			else if (collection.equals("response_functions")) {
+				responseMap.put((String)ucf.get("gate_name"),ucf);
+			}
+		}
+		reader.close();
+		partTypes.check(partsMap.values());
+		stage.end();
+        
+//		// dCAS9
+//        ComponentDefinition dCas9 = createCDS(document,"dCAS9_Mxi1");
+//        createProtein(document,"dCAS9_Mxi1",dCas9);
+//        
+//        // yeGFP
+//		ComponentDefinition yegfp_cds = createCDS(document, "yeGFP");
+//		createProtein(document,"yeGFP",yegfp_cds);
+//		String yegfp_sequence = "ggattctagaactagtggatctacaaaatgtctaaaggtgaagaattattcactggtgttgtcccaattttggttgaattagatggtgatgttaatggtcacaaattttctgtctccggtgaaggtgaaggtgatgctacttacggtaaattgaccttaaaatttatttgtactactggtaaattgccagttccatggccaaccttagtcactactttcggttatggtgttcaatgttttgctagatacccagatcatatgaaacaacatgactttttcaagtctgccatgccagaaggttatgttcaagaaagaactatttttttcaaagatgacggtaactacaagaccagagctgaagtcaagtttgaaggtgataccttagttaatagaatcgaattaaaaggtattgattttaaagaagatggtaacattttaggtcacaaattggaatacaactataactctcacaatgtttacatcatggctgacaaacaaaagaatggtatcaaagttaacttcaaaattagacacaacattgaagatggttctgttcaattagctgaccattatcaacaaaatactccaattggtgatggtccagtcttgttaccagacaaccattacttatccactcaatctgccttatccaaagatccaaacgaaaagagagaccacatggtcttgttagaatttgttactgctgctggtattacccatggtatggatgaattgtacaaataatgataccgtcgacctcgagtc";
+//		Sequence yegfp_seq= document.createSequence("yeGFP_protein_sequence", version, yegfp_sequence, Sequence.IUPAC_DNA);
+//		yegfp_cds.addSequence(yegfp_seq);
+
+		if (options.containsKey("parallel")) {
+			int parallelism = Runtime.getRuntime().availableProcessors();
+			if (!options.get("parallel").equals("true")) {
+				parallelism = Integer.parseInt(options.get("parallel"));
+			}
+			stage = metrics.start("parallel_convert");
+			ParallelConverter converter = new ParallelConverter(parallelism);
+			try {
+				converter.convert(document,partsMap,gate_partsArr,gatesMap,responseMap,input_sensorsArr,output_reportersArr);
+			} finally {
+				converter.shutdown();
+			}
+			stage.end();
+		} else {
+			stage = metrics.start("parts");
+			convertPartsToSBOL(document,partsMap.values());
+			stage.end();
+			stage = metrics.start("index");
+			PartIndex partIndex = indexParts(document,gate_partsArr,input_sensorsArr,output_reportersArr);
+			stage.end();
+			InteractionRegistry interactions = new InteractionRegistry();
+			stage = metrics.start("gates");
+			convertGatePartsToSBOL(document,partIndex,interactions,gate_partsArr,gatesMap,responseMap);
+			stage.end();
+			stage = metrics.start("sensors");
+			convertInputSensorsToSBOL(document,partIndex,interactions,input_sensorsArr);
+			stage.end();
+			stage = metrics.start("reporters");
+			convertOutputReportersToSBOL(document,partIndex,output_reportersArr);
+			stage.end();
+			stage = metrics.start("interactions");
+			interactions.emit(document);
+			stage.end();
+		}
+		stage = metrics.start("provenance");
+		Provenance.stamp(document, activityURI, createdDate, slimProvenance);
+		stage.end();
+		metrics.count("top_levels", document.getTopLevels().size());
+		return document;
+	}
+
+	/**
+	 * Create the conversion Activity and the Agent associated with it.
+	 */
+	static Activity createActivity(SBOLDocument document) throws SBOLValidationException
+	{
+		Activity activity = document.createActivity(activityId, version);
+		activity.setName(activityName);
+		activity.setDescription(activityDescription);
+		activity.setEndedAtTime(DateTime.now());
+		activityURI = activity.getIdentity();
+		Agent agent = document.createAgent(agentId, version);
+		agent.setName(agentName);
+		agent.setDescription(agentDescription);
+		agent.createAnnotation(new QName(dcNS,"source","dc"), URI.create(agentSource));
+		for (String creator : agentCreators) {
+			agent.createAnnotation(new QName(dcNS,"creator","dc"), creator);
+		}
+		activity.createAssociation("association", agent.getIdentity());
+		return activity;
+	}
+
+	/**
+	 * @return the current time in the format used for dcTerms:created
+	 */
+	static String now()
+	{
+		TimeZone tz = TimeZone.getTimeZone("UTC");
+		DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+		df.setTimeZone(tz);
+		return df.format(new Date());
+	}
+
+	/**
+	 * Convert the UCF file, or load its snapshot from the cache, and validate the document unless it was
+	 * loaded from the cache. Validation errors are added to errors.
+	 */
+	static SBOLDocument convertAndValidate(String pathToUCFFile, HashMap<String,String> options, String createdDate,
+			List<String> errors) 
+			throws SBOLValidationException, IOException, ParseException {
+		ParallelValidator parallel = null;
+		if (options.containsKey("validation-workers")) {
+			parallel = new ParallelValidator(Integer.parseInt(options.get("validation-workers")));
+		}
+		try {
+			return convertAndValidate(pathToUCFFile, options, createdDate, parallel, errors);
+		} finally {
+			if (parallel != null) {
+				parallel.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Convert and validate as above, validating in shards on a validator that is shared between
+	 * conversions, or on the calling thread if it is null.
+	 */
+	static SBOLDocument convertAndValidate(String pathToUCFFile, HashMap<String,String> options, String createdDate,
+			ParallelValidator parallel, List<String> errors) throws SBOLValidationException, IOException, ParseException {
+		SnapshotCache cache = null;
+		SBOLDocument document = null;
+		if (options.containsKey("cache")) {
+			cache = new SnapshotCache(new File(options.get("cache")));
+			document = cache.load(pathToUCFFile);
+		}
+		if (document != null) {
+			return document;
+		}
+		document = convert(pathToUCFFile, options, createdDate);
+		StageMetrics.Stage stage = metrics.start("validate");
+		errors.addAll(IncrementalValidator.validate(document, null, options.get("validate"), parallel).getErrors());
+		stage.end();
+		if (cache != null && errors.isEmpty() && !IncrementalValidator.NONE.equals(options.get("validate"))) {
+			cache.store(pathToUCFFile, document);
+		}
+		return document;
+	}
+
+	/**
+	 * Convert and validate the UCF file and write the document to the output, without uploading it.
+	 *
+	 * @return false if the document is not valid, in which case nothing is written
+	 */
+	static boolean convertToOutput(final String pathToUCFFile, HashMap<String,String> options, OutputSink output) 
+			throws SBOLValidationException, SBOLConversionException, IOException, ParseException {
+		final String createdDate = now();
+		if (options.containsKey("direct") && output.isTripleFormat()) {
+			StageMetrics.Stage stage = metrics.start("direct_write");
+			output.write(new OutputSink.TripleSource() {
+				public void write(SBOLTriples.Sink sink) throws IOException, ParseException {
+					new TripleConverter(sink, createdDate, slimProvenance).convert(pathToUCFFile, DateTime.now());
+				}
+			});
+			stage.end();
+			return true;
+		} else if (options.containsKey("direct")) {
+			System.err.println("--direct needs the jsonld or ntriples format, converting " + output.getFormat() + " through a document");
+		}
+		List<String> errors = new ArrayList<String>();
+		SBOLDocument document = convertAndValidate(pathToUCFFile, options, createdDate, errors);
+		if (errors.size()>0) {
+			for (String error : errors) {
+				System.err.println(error);
+			}
+			return false;
+		}
+		StageMetrics.Stage stage = metrics.start("write");
+		output.write(document);
+		stage.end();
+		return true;
+	}
+
 	// args[0] - login email
 	// args[1] - password
 	// args[2] - login user
@@ -815,10 +1055,70 @@ public class Cello2SBOL {
 	// args[9] - collection name
 	// args[10] - collection description
 	// args[11] - collection pubMedId
-	public static void main( String[] args ) throws SBOLValidationException, SBOLConversionException, SynBioHubException, FileNotFoundException, IOException, ParseException, URISyntaxException
+	// --parallel[=threads] - convert on a fork-join pool
+	// --batch=<directory|manifest> - convert many UCF files to the output directory instead of uploading
+	// --incremental - in batch mode, reconvert only the UCF records whose hashes changed
+	// --cache=<directory> - load and store snapshots of converted documents
+	// --validate=full|incremental|none - how much of the converted document to validate
+	// --validation-workers=<n> - validate in shards on n threads
+	// --upload-workers=<n> - concurrent attachment uploads
+	// --upload-retries=<n> - retries of a failed attachment upload, with exponential backoff
+	// --spool-threshold=<bytes> - larger attachments are spilled to a private directory under the temporary directory
+	// --publish-batch-size=<n> - submit the document to the collection in batches of n top-levels
+	// --resume - skip the publish steps that <temporary directory>/<collection id>_<version>.journal records as done
+	// --output=<file|-> - write the document to a file or standard output; with only a UCF file argument, nothing is uploaded
+	// --format=<format> - rdfxml, turtle, jsonld or ntriples, chosen from the extension of the output file by default
+	// --gzip[=false] - gzip the output, the default when the output file ends with .gz
+	// --part-types=<file> - extra or overriding part type to Sequence Ontology role mappings
+	// --provenance=full|slim - dcTerms:created on every converted object, or only on the Activity
+	// --direct - when only converting, stream jsonld or ntriples from the UCF records without building or validating a document
+	// --metrics=<file> - write the time, CPU time and allocation of each stage and counts of what was produced as JSON
+	// --metrics-prometheus=<file> - also write them in the Prometheus text format
+	// --export-ucf=<file|-> - with only an SBOL file argument, rebuild the converted UCF collections from it
+	// --serve[=port] - convert UCF files posted to http://localhost:<port>/convert on --workers threads until stopped
+	// --bind=<address> - the address the server listens on instead of the loopback interface
+	public static void main( String[] args ) throws SBOLValidationException, SBOLConversionException, SynBioHubException, FileNotFoundException, IOException, ParseException, URISyntaxException, InterruptedException
     {
+		HashMap<String,String> options = new HashMap<String,String>();
+		args = parseOptions(args, options);
+		boolean success;
+		try {
+			success = run(args, options);
+		} finally {
+			metrics.write(options.get("metrics"), options.get("metrics-prometheus"));
+		}
+		if (!success) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return false if a conversion failed, the document is not valid or an attachment could not be
+	 *         uploaded, so main exits with status 1
+	 */
+	static boolean run(String[] args, HashMap<String,String> options) throws SBOLValidationException, SBOLConversionException, SynBioHubException, FileNotFoundException, IOException, ParseException, URISyntaxException, InterruptedException
+    {
+		slimProvenance = Provenance.isSlim(options.get("provenance"));
+		if (options.containsKey("part-types")) {
+			partTypes = PartTypeRegistry.getDefault().extend(new File(options.get("part-types")));
+		}
+		if (options.containsKey("batch")) {
+			return BatchConverter.run(options);
+		}
+		if (options.containsKey("export-ucf")) {
+			return SBOL2UCF.run(args, options);
+		}
+		if (options.containsKey("serve")) {
+			return ConversionServer.run(options);
+		}
+		OutputSink output = OutputSink.fromOptions(options);
+		if (args.length == 1 && output != null) {
+			return convertToOutput(args[0], options, output);
+		}
 		if (args.length < 6) {
 			System.err.println("Usage:");
+			System.err.println(" path to UCF file, to only convert it to the --output file");
+			System.err.println("or:");
 			System.err.println(" login email");
 			System.err.println(" password");
 			System.err.println(" login user");
@@ -831,7 +1131,32 @@ public class Cello2SBOL {
 			System.err.println(" collection name");
 			System.err.println(" collection description");
 			System.err.println(" collection pubMedId");
-			return;
+			System.err.println("Options:");
+			System.err.println(" --parallel[=threads]  convert parts, gates, sensors and reporters in parallel");
+			System.err.println(" --batch=<dir|file>    convert the UCF files in a directory or listed in a manifest");
+			System.err.println(" --workers=<n>         number of files converted at once in batch or server mode");
+			System.err.println(" --output-dir=<dir>    where batch mode writes <name>.xml for each UCF file");
+			System.err.println(" --incremental         in batch mode, reconvert only the records that changed since the last run");
+			System.err.println(" --cache=<dir>         reuse a snapshot of the converted document when the UCF file is unchanged");
+			System.err.println(" --validate=<mode>     full (default), incremental to check only changed top-levels, or none");
+			System.err.println(" --validation-workers=<n>  validate in shards on n threads");
+			System.err.println(" --upload-workers=<n>  number of concurrent attachment uploads (default 4)");
+			System.err.println(" --upload-retries=<n>  retries of a failed attachment upload (default 3)");
+			System.err.println(" --spool-threshold=<bytes>  largest attachment kept in memory (default 1 MB)");
+			System.err.println(" --publish-batch-size=<n>  submit the document in dependency-ordered batches of n top-levels");
+			System.err.println(" --resume              skip the publish steps recorded in the journal of an earlier run");
+			System.err.println(" --output=<file|->     also write the document to a file, or to standard output");
+			System.err.println(" --format=<format>     rdfxml, turtle, jsonld or ntriples (default from the file extension)");
+			System.err.println(" --gzip[=false]        compress the output (default when the file ends with .gz)");
+			System.err.println(" --part-types=<file>   properties file of extra UCF part types and their SO roles");
+			System.err.println(" --provenance=slim     date only the conversion Activity instead of every object");
+			System.err.println(" --direct              stream JSON-LD or N-Triples without building or validating a document");
+			System.err.println(" --metrics=<file>      write the time and allocation of each stage as JSON");
+			System.err.println(" --metrics-prometheus=<file>  also write them in the Prometheus text format");
+			System.err.println(" --export-ucf=<file|-> rebuild the parts, gates, sensors and reporters of a UCF file from an SBOL file");
+			System.err.println(" --serve[=port]        convert UCF files posted to /convert on a local port (default " + ConversionServer.DEFAULT_PORT + ")");
+			System.err.println(" --bind=<address>      listen on another address than the loopback interface");
+			return true;
 		}
 		// Create an SBOLDocument
 		String loginEmail = args[0];
@@ -865,90 +1190,9 @@ public class Cello2SBOL {
 			collectionPubMedId = args[11];
 		}
 		
-		SBOLDocument document = new SBOLDocument(); 
-		document.setDefaultURIprefix(uriPrefix); 
-		document.setComplete(true); 
-		document.setCreateDefaults(true);
-		
-		TimeZone tz = TimeZone.getTimeZone("UTC");
-		DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-		df.setTimeZone(tz);
-		createdDate = df.format(new Date());
-		
-		// Create an Activity
-		Activity activity = document.createActivity("CelloUCF2sbol_Activity", version);
-		activity.setName("Cello UCF to SBOL conversion");
-		activity.setDescription("Conversion of the Cello UCF parts and metadata to SBOL 2 documents.");
-		activity.setEndedAtTime(DateTime.now());
-		activityURI = activity.getIdentity();
-		Agent agent = document.createAgent("CelloUCF2SBOL", version);
-		agent.setName("Cello UCF to SBOL");
-		agent.setDescription("A script to convert Cello UCF parts and metadata to SBOL 2 documents.");
-		agent.createAnnotation(new QName(dcNS,"source","dc"), URI.create("https://github.com/MyersResearchGroup/UCF2SBOL"));
-		agent.createAnnotation(new QName(dcNS,"creator","dc"), "Prashant Vaidyanathan");
-		agent.createAnnotation(new QName(dcNS,"creator","dc"), "Chris J. Myers");
-		activity.createAssociation("association", agent.getIdentity());
-		
-//		Attachment attachmentUCF = document.createAttachment("Eco1C1G1T1_UCF", version, 
-//				URI.create("https://github.com/MyersResearchGroup/UCF2SBOL/blob/master/UCF2SBOL/src/main/resources/Eco1C1G1T1.UCF.json"));
-//		activity.createUsage("UCF_File", attachmentUCF.getIdentity());
-//		document.write(System.out);
-//		if (true) {
-//			return;
-//		}
-		
-		// Parse JSON
-		HashMap<String,JSONObject> partsMap = new HashMap<String,JSONObject>();
-		HashSet<JSONObject> gate_partsArr = new HashSet<JSONObject>();
-		HashSet<JSONObject> input_sensorsArr = new HashSet<JSONObject>();
-		HashSet<JSONObject> output_reportersArr = new HashSet<JSONObject>();
-		HashMap<String,JSONObject> gatesMap = new HashMap<String,JSONObject>();
-		HashMap<String,JSONObject> responseMap = new HashMap<String,JSONObject>();
-
-		JSONParser parser = new JSONParser();
-		JSONArray a = (JSONArray) parser.parse(new FileReader(pathToUCFFile));
-
-		for (Object o : a)
-		{
-			JSONObject ucf = (JSONObject) o;
-
-			String collection = (String) ucf.get("collection");
-
-			if (collection.equals("parts")) {
-				partsMap.put((String)ucf.get("name"),ucf);
-			}
-			else if (collection.equals("gate_parts")) {
-				gate_partsArr.add(ucf);
-			}
-			else if (collection.equals("input_sensors")) {
-				input_sensorsArr.add(ucf);
-			}
-			else if (collection.equals("output_reporters")) {
-				output_reportersArr.add(ucf);
-			}
-			else if (collection.equals("gates")) {
-				gatesMap.put((String)ucf.get("gate_name"),ucf);
-			}
-			else if (collection.equals("response_functions")) {
-				responseMap.put((String)ucf.get("gate_name"),ucf);
-			}
-		}
-        
-//		// dCAS9
-//        ComponentDefinition dCas9 = createCDS(document,"dCAS9_Mxi1");
-//        createProtein(document,"dCAS9_Mxi1",dCas9);
-//        
-//        // yeGFP
-//		ComponentDefinition yegfp_cds = createCDS(document, "yeGFP");
-//		createProtein(document,"yeGFP",yegfp_cds);
-//		String yegfp_sequence = "ggattctagaactagtggatctacaaaatgtctaaaggtgaagaattattcactggtgttgtcccaattttggttgaattagatggtgatgttaatggtcacaaattttctgtctccggtgaaggtgaaggtgatgctacttacggtaaattgaccttaaaatttatttgtactactggtaaattgccagttccatggccaaccttagtcactactttcggttatggtgttcaatgttttgctagatacccagatcatatgaaacaacatgactttttcaagtctgccatgccagaaggttatgttcaagaaagaactatttttttcaaagatgacggtaactacaagaccagagctgaagtcaagtttgaaggtgataccttagttaatagaatcgaattaaaaggtattgattttaaagaagatggtaacattttaggtcacaaattggaatacaactataactctcacaatgtttacatcatggctgacaaacaaaagaatggtatcaaagttaacttcaaaattagacacaacattgaagatggttctgttcaattagctgaccattatcaacaaaatactccaattggtgatggtccagtcttgttaccagacaaccattacttatccactcaatctgccttatccaaagatccaaacgaaaagagagaccacatggtcttgttagaatttgttactgctgctggtattacccatggtatggatgaattgtacaaataatgataccgtcgacctcgagtc";
-//		Sequence yegfp_seq= document.createSequence("yeGFP_protein_sequence", version, yegfp_sequence, Sequence.IUPAC_DNA);
-//		yegfp_cds.addSequence(yegfp_seq);
-
-		convertPartsToSBOL(document,partsMap);
-        convertGatePartsToSBOL(document,gate_partsArr,gatesMap,responseMap);
-        convertInputSensorsToSBOL(document,input_sensorsArr);
-        convertOutputReportersToSBOL(document,output_reportersArr);
+		List<String> errors = new ArrayList<String>();
+		SBOLDocument document = convertAndValidate(pathToUCFFile, options, now(), errors);
+		Activity activity = document.getActivity("CelloUCF2sbol_Activity", version);
         
         //createSensorsReporters(document);
         
@@ -959,142 +1203,174 @@ public class Cello2SBOL {
 //        	}
 //        }
         
-        // Validate
-        SBOLValidate.validateSBOL(document,true,true,true);
-        if (SBOLValidate.getNumErrors()>0) {
-        	for (String error : SBOLValidate.getErrors()) {
-        		System.out.println(error);
+        if (errors.size()>0) {
+        	for (String error : errors) {
+        		System.err.println(error);
         	}
+        	System.err.println("Validation failed, nothing was uploaded or written to --output");
+        	return false;
         } else {   
         	// Upload to SynBioHub
         	System.out.println("Uploading to SynBioHub " + databaseURL);
         	System.out.println("Database Prefix: " + databasePrefix + " Login " + loginUser + " CollectionId " + collectionId + " Version " + collectionVersion);
-        	SynBioHubFrontend sbh = new SynBioHubFrontend(databaseURL,databasePrefix);
-        	sbh.login(loginEmail, password);
-        	sbh.createCollection(collectionId, collectionVersion, collectionName, collectionDescription,
-        			collectionPubMedId, true);
-        	sbh.attachFile(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion), pathToUCFFile);
-        	SBOLDocument doc = sbh.getSBOL(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion));
-        	for (Attachment attachment : doc.getAttachments()) {
-        		activity.createUsage("UCF_file", attachment.getIdentity());
-        		break;
+        	URI collectionURI = URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion);
+        	PublishJournal journal = new PublishJournal(PublishJournal.journalFile(tmpDir, collectionId, collectionVersion), 
+        			SnapshotCache.key(pathToUCFFile) + "\t" + collectionURI, options.containsKey("resume"));
+        	if (journal.size() > 0) {
+        		System.out.println("Resuming from " + journal.getFile() + ", " + journal.size() + " steps already done");
         	}
-        	document.write("/Users/myers/"+collectionId + ".xml");
-        	System.out.println(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion);
-        	sbh.addToCollection(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion), false, document);
-        	JSONArray motif_library = new JSONArray();
-    		for (Object o : a)
-    		{
-    			JSONObject ucf = (JSONObject) o;
+        	try {
+        		StageMetrics.Stage stage = metrics.start("synbiohub_login");
+        		SynBioHubFrontend sbh = new SynBioHubFrontend(databaseURL,databasePrefix);
+        		FlightEvents.SynBioHubCall call = FlightEvents.beginCall();
+        		boolean success = false;
+        		try {
+        			sbh.login(loginEmail, password);
+        			success = true;
+        		} finally {
+        			FlightEvents.commit(call, "login", databaseURL, -1, 0, success);
+        		}
+        		stage.end();
+        		stage = metrics.start("synbiohub_collection");
+        		if (!journal.isDone(PublishJournal.COLLECTION)) {
+        			call = FlightEvents.beginCall();
+        			success = false;
+        			try {
+        				sbh.createCollection(collectionId, collectionVersion, collectionName, collectionDescription,
+        						collectionPubMedId, true);
+        				success = true;
+        			} finally {
+        				FlightEvents.commit(call, "createCollection", collectionURI, -1, 0, success);
+        			}
+        			journal.record(PublishJournal.COLLECTION);
+        		}
+        		if (!journal.isDone(PublishJournal.UCF_FILE)) {
+        			call = FlightEvents.beginCall();
+        			success = false;
+        			try {
+        				sbh.attachFile(collectionURI, pathToUCFFile);
+        				success = true;
+        			} finally {
+        				FlightEvents.commit(call, "attachFile", collectionURI, new File(pathToUCFFile).length(), 0, success);
+        			}
+        			journal.record(PublishJournal.UCF_FILE);
+        		}
+        		call = FlightEvents.beginCall();
+        		success = false;
+        		SBOLDocument doc;
+        		try {
+        			doc = sbh.getSBOL(collectionURI);
+        			success = true;
+        		} finally {
+        			FlightEvents.commit(call, "getSBOL", collectionURI, -1, 0, success);
+        		}
+        		for (Attachment attachment : doc.getAttachments()) {
+        			activity.createUsage("UCF_file", attachment.getIdentity());
+        			break;
+        		}
+        		stage.end();
+        		if (output != null) {
+        			stage = metrics.start("write");
+        			output.write(document);
+        			stage.end();
+        		}
+        		System.out.println(collectionURI);
+        		stage = metrics.start("synbiohub_publish");
+        		if (options.containsKey("publish-batch-size")) {
+        			ChunkedPublisher publisher = new ChunkedPublisher(Integer.parseInt(options.get("publish-batch-size")));
+        			publisher.publish(sbh, collectionURI, document, journal);
+        		} else if (!journal.isDone(PublishJournal.DOCUMENT)) {
+        			call = FlightEvents.beginCall();
+        			success = false;
+        			try {
+        				sbh.addToCollection(collectionURI, false, document);
+        				success = true;
+        			} finally {
+        				FlightEvents.commit(call, "addToCollection", collectionURI, -1, document.getTopLevels().size(), success);
+        			}
+        			journal.record(PublishJournal.DOCUMENT);
+        		}
+        		stage.end();
+        		stage = metrics.start("synbiohub_attachments");
+        		int uploadWorkers = 4;
+        		if (options.containsKey("upload-workers")) {
+        			uploadWorkers = Integer.parseInt(options.get("upload-workers"));
+        		}
+        		int uploadRetries = 3;
+        		if (options.containsKey("upload-retries")) {
+        			uploadRetries = Integer.parseInt(options.get("upload-retries"));
+        		}
+        		AttachmentUploader uploader = new AttachmentUploader(databaseURL, databasePrefix, loginEmail, password, 
+        				uploadWorkers, uploadRetries, journal);
+        		long spoolThreshold = AttachmentSpool.DEFAULT_THRESHOLD;
+        		if (options.containsKey("spool-threshold")) {
+        			spoolThreshold = Long.parseLong(options.get("spool-threshold"));
+        		}
+        		AttachmentSpool spool = new AttachmentSpool(new File(tmpDir), spoolThreshold);
+        		List<AttachmentUploader.Result> results;
+        		try {
+        			UCFIndex index = new UCFIndex(pathToUCFFile);
+        			try {
+        				for (UCFIndex.Entry entry : index.getEntries())
+        				{
+        					String collection = entry.getCollection();
 
-    			String collection = (String) ucf.get("collection");
-
-    			if (collection.equals("gate_toxicity")) {
-    				String gateName = (String)ucf.get("gate_name");
-    				File file = new File(args[3] + gateName+"_gate_toxicity.json");
-    				FileOutputStream stream = new FileOutputStream(file);
-    				BufferedOutputStream buffer = new BufferedOutputStream(stream);
-    				stream.write(ucf.toJSONString().getBytes());
-    				stream.close();
-    				buffer.close();
-    				sbh.attachFile(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + gateName + "/" + collectionVersion), 
-    						tmpDir + gateName+"_gate_toxicity.json");
-    			} else if (collection.equals("gate_cytometry")) {
-    				String gateName = (String)ucf.get("gate_name");
-    				File file = new File(args[3] + gateName+"_gate_cytometry.json");
-    				FileOutputStream stream = new FileOutputStream(file);
-    				BufferedOutputStream buffer = new BufferedOutputStream(stream);
-    				stream.write(ucf.toJSONString().getBytes());
-    				stream.close();
-    				buffer.close();
-    				sbh.attachFile(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + gateName + "/" + collectionVersion), 
-    						tmpDir + gateName+"_gate_cytometry.json");
-    			} else if (collection.equals("header")) {
-    				File file = new File(args[3] + "header.json");
-    				FileOutputStream stream = new FileOutputStream(file);
-    				BufferedOutputStream buffer = new BufferedOutputStream(stream);
-    				stream.write(ucf.toJSONString().getBytes());
-    				stream.close();
-    				buffer.close();
-    				sbh.attachFile(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion), 
-    						tmpDir + "header.json");
-    			} else if (collection.equals("measurement_std")) {
-    				File file = new File(args[3] + "measurement_std.json");
-    				FileOutputStream stream = new FileOutputStream(file);
-    				BufferedOutputStream buffer = new BufferedOutputStream(stream);
-    				stream.write(ucf.toJSONString().getBytes());
-    				stream.close();
-    				buffer.close();
-    				sbh.attachFile(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion), 
-    						tmpDir + "measurement_std.json");
-    			} else if (collection.equals("logic_constraints")) {
-    				File file = new File(args[3] + "logic_constraints.json");
-    				FileOutputStream stream = new FileOutputStream(file);
-    				BufferedOutputStream buffer = new BufferedOutputStream(stream);
-    				stream.write(ucf.toJSONString().getBytes());
-    				stream.close();
-    				buffer.close();
-    				sbh.attachFile(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion), 
-    						tmpDir + "logic_constraints.json");
-    			} else if (collection.equals("eugene_rules")) {
-    				File file = new File(args[3] + "eugene_rules.json");
-    				FileOutputStream stream = new FileOutputStream(file);
-    				BufferedOutputStream buffer = new BufferedOutputStream(stream);
-    				stream.write(ucf.toJSONString().getBytes());
-    				stream.close();
-    				buffer.close();
-    				sbh.attachFile(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion), 
-    						tmpDir + "eugene_rules.json");
-    			} else if (collection.equals("genetic_locations")) {
-    				File file = new File(args[3] + "genetic_locations.json");
-    				FileOutputStream stream = new FileOutputStream(file);
-    				BufferedOutputStream buffer = new BufferedOutputStream(stream);
-    				stream.write(ucf.toJSONString().getBytes());
-    				stream.close();
-    				buffer.close();
-    				sbh.attachFile(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion), 
-    						tmpDir + "genetic_locations.json");
-    			} else if (collection.equals("PartitionProfile")) {
-    				File file = new File(args[3] + "PartitionProfile.json");
-    				FileOutputStream stream = new FileOutputStream(file);
-    				BufferedOutputStream buffer = new BufferedOutputStream(stream);
-    				stream.write(ucf.toJSONString().getBytes());
-    				stream.close();
-    				buffer.close();
-    				sbh.attachFile(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion), 
-    						tmpDir + "PartitionProfile.json");
-    			} else if (collection.equals("containers")) {
-    				File file = new File(args[3] + "containers.json");
-    				FileOutputStream stream = new FileOutputStream(file);
-    				BufferedOutputStream buffer = new BufferedOutputStream(stream);
-    				stream.write(ucf.toJSONString().getBytes());
-    				stream.close();
-    				buffer.close();
-    				sbh.attachFile(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion), 
-    						tmpDir + "containers.json");
-    			} else if (collection.equals("motif_library")) {
-    				motif_library.add(ucf);
-    			} else if (collection.equals("gates")) {
-    			} else if (collection.equals("gate_parts")) {
-    			} else if (collection.equals("input_sensors")) {
-    			} else if (collection.equals("output_reporters")) {
-    			} else if (collection.equals("parts")) {
-    			} else if (collection.equals("response_functions")) {
-    			} else {
-        			System.out.println(collection);
+        					if (collection.equals("gate_toxicity") || collection.equals("gate_cytometry")) {
+        						String gateName = entry.getGateName();
+        						uploader.submit(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + gateName + "/" + collectionVersion), 
+        								spool.spool(index, entry, gateName + "_" + collection));
+        					} else if (collection.equals("header") || collection.equals("measurement_std") ||
+        							collection.equals("logic_constraints") || collection.equals("eugene_rules") ||
+        							collection.equals("genetic_locations") || collection.equals("PartitionProfile") ||
+        							collection.equals("containers")) {
+        						uploader.submit(collectionURI, spool.spool(index, entry, collection));
+        					} else if (collection.equals("motif_library")) {
+        					} else if (conversionCollections.contains(collection)) {
+        					} else {
+        						System.out.println(collection);
+        					}
+        				}
+	        			uploader.submit(collectionURI, spool.spool(index, index.getEntries("motif_library"), "motif_library"));
+        			} finally {
+        				index.close();
+        			}
+        			results = uploader.await();
+        		} finally {
+        			// Workers may still be reading spilled attachments, so stop them before the files are deleted
+        			try {
+        				uploader.shutdown();
+        			} finally {
+        				spool.close();
+        			}
+        		}
+        		stage.end();
+    			int failed = 0;
+    			for (AttachmentUploader.Result result : results) {
+    				if (!result.isSuccess()) {
+    					System.out.println("Failed to attach " + result.getFileName() + " to " + result.getTarget() + 
+    							" after " + result.getAttempts() + " attempts: " + result.getError().getMessage());
+    					failed++;
+    				} else if (result.getAttempts() > 0) {
+    					metrics.count("attachments", 1);
+    					metrics.count("attachment_bytes_uploaded", result.getLength());
+    				}
+    			}
+    			metrics.count("attachments_failed", failed);
+    			if (failed > 0) {
+    				System.err.println("Conversion and validation successful, " + failed + " attachments failed to upload");
+    				System.err.println("Rerun with --resume to upload only what is missing");
+    				return false;
     			}
-    		}
-			File file = new File(tmpDir + "motif_library.json");
-			FileOutputStream stream = new FileOutputStream(file);
-			BufferedOutputStream buffer = new BufferedOutputStream(stream);
-			stream.write(motif_library.toJSONString().getBytes());
-			stream.close();
-			buffer.close();
-			sbh.attachFile(URI.create(databasePrefix + "/user/" + loginUser + "/" + collectionId + "/" + collectionId + "_collection/" + collectionVersion), 
-					tmpDir + "motif_library.json");
+        	} catch (SynBioHubException e) {
+        		System.err.println("Publish stopped, rerun with --resume to continue from " + journal.getFile());
+        		throw e;
+        	} finally {
+        		journal.close();
+        	}
         	System.out.println("Conversion, validation, and upload successful");
         }
 
         //document.write(System.out);
+        return true;
     }
 }
@@ -0,0 +1,209 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.sbolstandard.core2.Component;
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.Module;
+import org.sbolstandard.core2.ModuleDefinition;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.Sequence;
+import org.sbolstandard.core2.TopLevel;
+import org.synbiohub.frontend.SynBioHubException;
+import org.synbiohub.frontend.SynBioHubFrontend;
+
+/**
+ * Submits a document to a SynBioHub collection in batches instead of a single request. Top-levels are
+ * submitted in tiers so every batch only refers to what an earlier batch or the batch itself holds:
+ * provenance first, then ComponentDefinitions without components (parts, proteins, complexes) with their
+ * sequences, then composite ComponentDefinitions (gates, sensors, reporters) by nesting depth, then
+ * ModuleDefinitions, then anything else. A ComponentDefinition is never split from its sequences. Only one
+ * batch is copied out of the document at a time.
+ */
+public class ChunkedPublisher {
+
+	private final int batchSize;
+
+	public ChunkedPublisher(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @return the identities of each batch in submission order
+	 */
+	public List<List<URI>> plan(SBOLDocument document) {
+		TreeMap<Integer,List<List<URI>>> tiers = new TreeMap<Integer,List<List<URI>>>();
+		Set<URI> placed = new HashSet<URI>();
+		HashMap<URI,Integer> depths = new HashMap<URI,Integer>();
+
+		for (TopLevel topLevel : sorted(document.getAgents())) {
+			add(tiers, 0, group(placed, topLevel.getIdentity()));
+		}
+		for (TopLevel topLevel : sorted(document.getPlans())) {
+			add(tiers, 0, group(placed, topLevel.getIdentity()));
+		}
+		for (TopLevel topLevel : sorted(document.getActivities())) {
+			add(tiers, 1, group(placed, topLevel.getIdentity()));
+		}
+		for (ComponentDefinition cd : sorted(document.getComponentDefinitions())) {
+			List<URI> group = group(placed, cd.getIdentity());
+			for (URI sequence : sortedURIs(cd.getSequenceURIs())) {
+				if (document.getSequence(sequence) != null && placed.add(sequence)) {
+					group.add(sequence);
+				}
+			}
+			add(tiers, 2 + depth(document, cd, depths), group);
+		}
+		int moduleTier = 2 + depths.size() + 1;
+		for (ModuleDefinition md : sorted(document.getModuleDefinitions())) {
+			add(tiers, moduleTier + depth(document, md, depths), group(placed, md.getIdentity()));
+		}
+		int lastTier = moduleTier + document.getModuleDefinitions().size() + 1;
+		for (Sequence sequence : sorted(document.getSequences())) {
+			if (!placed.contains(sequence.getIdentity())) {
+				add(tiers, 2, group(placed, sequence.getIdentity()));
+			}
+		}
+		for (TopLevel topLevel : sorted(document.getTopLevels())) {
+			if (!placed.contains(topLevel.getIdentity())) {
+				add(tiers, lastTier, group(placed, topLevel.getIdentity()));
+			}
+		}
+
+		List<List<URI>> batches = new ArrayList<List<URI>>();
+		for (List<List<URI>> tier : tiers.values()) {
+			List<URI> batch = new ArrayList<URI>();
+			for (List<URI> group : tier) {
+				if (!batch.isEmpty() && batch.size() + group.size() > batchSize) {
+					batches.add(batch);
+					batch = new ArrayList<URI>();
+				}
+				batch.addAll(group);
+			}
+			if (!batch.isEmpty()) {
+				batches.add(batch);
+			}
+		}
+		return batches;
+	}
+
+	/**
+	 * @return a document holding copies of the top-levels of one batch
+	 */
+	public static SBOLDocument chunk(SBOLDocument document, List<URI> batch) throws SBOLValidationException {
+		SBOLDocument chunk = Cello2SBOL.createDocument(false);
+		for (URI uri : batch) {
+			chunk.createCopy(document.getTopLevel(uri));
+		}
+		return chunk;
+	}
+
+	public void publish(SynBioHubFrontend sbh, URI collection, SBOLDocument document)
+			throws SynBioHubException, SBOLValidationException, IOException {
+		publish(sbh, collection, document, null);
+	}
+
+	/**
+	 * Submit the batches that the journal does not record as done, recording each one as it completes.
+	 *
+	 * @param journal the journal of the publish, or null
+	 */
+	public void publish(SynBioHubFrontend sbh, URI collection, SBOLDocument document, PublishJournal journal)
+			throws SynBioHubException, SBOLValidationException, IOException {
+		List<List<URI>> batches = plan(document);
+		for (int i = 0; i < batches.size(); i++) {
+			String step = PublishJournal.step(PublishJournal.DOCUMENT, "batch", batchSize + ":" + i + "/" + batches.size());
+			if (journal != null && journal.isDone(step)) {
+				System.out.println("Skipping batch " + (i + 1) + " of " + batches.size() + ", already submitted");
+				continue;
+			}
+			System.out.println("Submitting batch " + (i + 1) + " of " + batches.size() + " (" + batches.get(i).size() + " top-levels)");
+			SBOLDocument chunk = chunk(document, batches.get(i));
+			FlightEvents.SynBioHubCall call = FlightEvents.beginCall();
+			boolean submitted = false;
+			try {
+				sbh.addToCollection(collection, false, chunk);
+				submitted = true;
+			} finally {
+				FlightEvents.commit(call, "addToCollection", collection, -1, batches.get(i).size(), submitted);
+			}
+			if (journal != null) {
+				journal.record(step);
+			}
+		}
+	}
+
+	private static List<URI> group(Set<URI> placed, URI identity) {
+		List<URI> group = new ArrayList<URI>();
+		placed.add(identity);
+		group.add(identity);
+		return group;
+	}
+
+	private static void add(TreeMap<Integer,List<List<URI>>> tiers, int tier, List<URI> group) {
+		List<List<URI>> groups = tiers.get(tier);
+		if (groups == null) {
+			groups = new ArrayList<List<URI>>();
+			tiers.put(tier, groups);
+		}
+		groups.add(group);
+	}
+
+	/**
+	 * @return 0 for a definition without subcomponents or modules, otherwise one more than its deepest child
+	 */
+	private static int depth(SBOLDocument document, TopLevel definition, HashMap<URI,Integer> depths) {
+		Integer known = depths.get(definition.getIdentity());
+		if (known != null) {
+			return known;
+		}
+		// Guards against cycles, which a valid document does not have
+		depths.put(definition.getIdentity(), 0);
+		List<URI> children = new ArrayList<URI>();
+		if (definition instanceof ComponentDefinition) {
+			for (Component component : ((ComponentDefinition)definition).getComponents()) {
+				children.add(component.getDefinitionURI());
+			}
+		} else {
+			for (Module module : ((ModuleDefinition)definition).getModules()) {
+				children.add(module.getDefinitionURI());
+			}
+		}
+		int depth = 0;
+		for (URI child : children) {
+			TopLevel childDefinition = document.getTopLevel(child);
+			if (childDefinition != null) {
+				depth = Math.max(depth, depth(document, childDefinition, depths) + 1);
+			}
+		}
+		depths.put(definition.getIdentity(), depth);
+		return depth;
+	}
+
+	private static List<URI> sortedURIs(Collection<URI> uris) {
+		List<URI> sorted = new ArrayList<URI>(uris);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	private static <T extends TopLevel> List<T> sorted(Collection<T> topLevels) {
+		List<T> sorted = new ArrayList<T>(topLevels);
+		Collections.sort(sorted, new Comparator<T>() {
+			public int compare(T a, T b) {
+				return a.getIdentity().compareTo(b.getIdentity());
+			}
+		});
+		return sorted;
+	}
+}
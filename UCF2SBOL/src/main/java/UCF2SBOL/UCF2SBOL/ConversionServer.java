@@ -0,0 +1,313 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.simple.parser.ParseException;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidationException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Converts UCF files posted over HTTP in one long-running JVM, so that a job runner pays for JVM startup
+ * and class loading once instead of for every file, and later requests run on code that is already
+ * compiled. Requests are converted concurrently on a fixed pool of workers, with the options the server
+ * was started with; --cache, --validate and --validation-workers apply to every request. The server
+ * listens on the loopback interface unless --bind names another address.
+ *
+ * <pre>
+ * POST /convert[?format=rdfxml|turtle|jsonld|ntriples][&amp;validate=full|none]   body: the UCF file
+ *   200  the validated SBOL document, gzip compressed if the request accepts it
+ *   400  the UCF file could not be parsed or uses unknown part types or missing parts
+ *   422  the validation errors, one per line
+ * GET /metrics   the stage metrics of all requests so far, in the Prometheus text format
+ * GET /health    200 once the server accepts requests
+ * </pre>
+ */
+public class ConversionServer {
+
+	public static final int DEFAULT_PORT = 8742;
+
+	private static final int STOP_SECONDS = 10;
+
+	private final HttpServer server;
+	private final ExecutorService pool;
+	private final HashMap<String,String> options;
+	private final File directory;
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private ParallelValidator validator = null;
+	private int active = 0;
+	private boolean stopping = false;
+
+	public ConversionServer(InetSocketAddress address, int workers, HashMap<String,String> options) throws IOException {
+		this.options = options;
+		this.directory = Files.createTempDirectory("ucf2sbol-server-").toFile();
+		if (options.containsKey("validation-workers")) {
+			validator = new ParallelValidator(Integer.parseInt(options.get("validation-workers")));
+		}
+		pool = Executors.newFixedThreadPool(workers);
+		server = HttpServer.create(address, 0);
+		server.setExecutor(pool);
+		server.createContext("/convert", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					if (!enter()) {
+						respond(exchange, 503, "The server is stopping\n");
+						return;
+					}
+					try {
+						convert(exchange);
+					} finally {
+						exit();
+					}
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.createContext("/metrics", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, Cello2SBOL.metrics.toPrometheus());
+			}
+		});
+		server.createContext("/health", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, "ok\n");
+			}
+		});
+	}
+
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	private synchronized boolean enter() {
+		if (stopping) {
+			return false;
+		}
+		active++;
+		return true;
+	}
+
+	private synchronized void exit() {
+		active--;
+		notifyAll();
+	}
+
+	/**
+	 * Refuse new conversions, wait up to ten seconds for those in progress to finish, then close the
+	 * server and remove the request files.
+	 */
+	public void stop() {
+		long deadline = System.currentTimeMillis() + STOP_SECONDS * 1000L;
+		synchronized (this) {
+			stopping = true;
+			long wait;
+			while (active > 0 && (wait = deadline - System.currentTimeMillis()) > 0) {
+				try {
+					wait(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		// In-progress conversions are done, so there is no exchange to wait for
+		server.stop(0);
+		pool.shutdown();
+		try {
+			pool.awaitTermination(STOP_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (validator != null) {
+			validator.shutdown();
+		}
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+		stopped.countDown();
+	}
+
+	public void awaitStop() throws InterruptedException {
+		stopped.await();
+	}
+
+	private void convert(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("POST")) {
+			exchange.getResponseHeaders().set("Allow", "POST");
+			respond(exchange, 405, "POST the UCF file to /convert\n");
+			return;
+		}
+		HashMap<String,String> requestOptions = new HashMap<String,String>(options);
+		requestOptions.putAll(query(exchange.getRequestURI().getRawQuery()));
+		OutputSink sink;
+		try {
+			// Only the format of the sink is used, the document is written to the response
+			sink = new OutputSink(OutputSink.STDOUT, requestOptions.containsKey("format") ?
+					requestOptions.get("format") : OutputSink.RDFXML, Boolean.FALSE);
+		} catch (IllegalArgumentException e) {
+			respond(exchange, 400, e.getMessage() + "\n");
+			return;
+		}
+		File ucf = File.createTempFile("request-", ".UCF.json", directory);
+		List<String> errors = new ArrayList<String>();
+		SBOLDocument document;
+		try {
+			Files.copy(exchange.getRequestBody(), ucf.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			document = Cello2SBOL.convertAndValidate(ucf.getPath(), requestOptions, Cello2SBOL.now(), validator, errors);
+		} catch (ParseException e) {
+			respond(exchange, 400, "Invalid UCF file: " + e + "\n");
+			return;
+		} catch (IllegalArgumentException e) {
+			respond(exchange, 400, e.getMessage() + "\n");
+			return;
+		} catch (SBOLValidationException e) {
+			respond(exchange, 422, e.getMessage() + "\n");
+			return;
+		} catch (IOException e) {
+			respond(exchange, 500, e + "\n");
+			return;
+		} catch (RuntimeException e) {
+			respond(exchange, 500, e + "\n");
+			return;
+		} finally {
+			ucf.delete();
+		}
+		Cello2SBOL.metrics.count("requests", 1);
+		if (!errors.isEmpty()) {
+			StringBuilder text = new StringBuilder();
+			for (String error : errors) {
+				text.append(error).append('\n');
+			}
+			respond(exchange, 422, text.toString());
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", contentType(sink.getFormat()));
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+		if (gzip) {
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+		exchange.sendResponseHeaders(200, 0);
+		OutputStream out = exchange.getResponseBody();
+		if (gzip) {
+			out = new GZIPOutputStream(out, 1 << 16);
+		}
+		StageMetrics.Stage stage = Cello2SBOL.metrics.start("write");
+		try {
+			sink.write(document, out);
+		} catch (Exception e) {
+			// The status is already sent, so the client sees a truncated body
+			System.err.println("Writing the response failed: " + e);
+		} finally {
+			out.close();
+		}
+		stage.end();
+	}
+
+	private static HashMap<String,String> query(String rawQuery) throws UnsupportedEncodingException {
+		HashMap<String,String> parameters = new HashMap<String,String>();
+		if (rawQuery == null) {
+			return parameters;
+		}
+		for (String parameter : rawQuery.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals < 0) {
+				parameters.put(URLDecoder.decode(parameter, "UTF-8"), "true");
+			} else if (equals > 0) {
+				parameters.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+						URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+			}
+		}
+		// Only the format and validation can be chosen per request
+		parameters.keySet().retainAll(Arrays.asList("format", "validate"));
+		return parameters;
+	}
+
+	static String contentType(String format) {
+		if (OutputSink.TURTLE.equals(format)) {
+			return "text/turtle";
+		} else if (OutputSink.JSONLD.equals(format)) {
+			return "application/ld+json";
+		} else if (OutputSink.NTRIPLES.equals(format)) {
+			return "application/n-triples";
+		}
+		return "application/rdf+xml";
+	}
+
+	private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+		byte[] body = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Serve on the port of the --serve option until the JVM is stopped.
+	 */
+	public static boolean run(HashMap<String,String> options) throws IOException, InterruptedException {
+		int port = DEFAULT_PORT;
+		if (!options.get("serve").equals("true")) {
+			port = Integer.parseInt(options.get("serve"));
+		}
+		InetAddress bind = InetAddress.getLoopbackAddress();
+		if (options.containsKey("bind")) {
+			bind = InetAddress.getByName(options.get("bind"));
+		}
+		int workers = Runtime.getRuntime().availableProcessors();
+		if (options.containsKey("workers")) {
+			workers = Integer.parseInt(options.get("workers"));
+		}
+		final ConversionServer server = new ConversionServer(new InetSocketAddress(bind, port), workers, options);
+		final Thread main = Thread.currentThread();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				server.stop();
+				try {
+					// Let main write the metrics files before the JVM exits
+					main.join(STOP_SECONDS * 1000);
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+		server.start();
+		System.out.println("Listening on http://" + server.getAddress().getHostString() + ":" +
+				server.getAddress().getPort() + "/convert with " + workers + " workers");
+		server.awaitStop();
+		return true;
+	}
+}
@@ -0,0 +1,190 @@
+package UCF2SBOL.UCF2SBOL;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import org.sbolstandard.core2.SBOLDocument;
+
+/**
+ * Java Flight Recorder events for each converted UCF record, each validation shard and each SynBioHub
+ * call. The events are disabled by default; record a run with
+ * -XX:StartFlightRecording=settings=ucf2sbol.jfc,filename=run.jfr using the settings file in the
+ * resources to turn them on. While they are disabled a begin method returns null after a single check,
+ * and the matching commit does nothing. On a JVM without JFR no event class is ever loaded.
+ */
+public class FlightEvents {
+
+	static final boolean AVAILABLE = available();
+
+	@Name("UCF2SBOL.RecordConversion")
+	@Label("UCF Record Conversion")
+	@Description("Conversion of one UCF record to SBOL")
+	@Category({ "UCF2SBOL", "Conversion" })
+	@Enabled(false)
+	@StackTrace(false)
+	public static class RecordConversion extends Event {
+		@Label("Collection")
+		String collection;
+
+		@Label("Name")
+		String name;
+
+		@Label("Top-Levels Created")
+		int topLevels;
+	}
+
+	@Name("UCF2SBOL.ValidationShard")
+	@Label("Validation Shard")
+	@Description("Validation of a shard of the converted document")
+	@Category({ "UCF2SBOL", "Validation" })
+	@Enabled(false)
+	@StackTrace(false)
+	public static class ValidationShard extends Event {
+		@Label("Shard")
+		int shard;
+
+		@Label("Shards")
+		int shards;
+
+		@Label("Top-Levels")
+		@Description("Top-levels in the shard, including those it references")
+		int topLevels;
+
+		@Label("Errors")
+		int errors;
+	}
+
+	@Name("UCF2SBOL.SynBioHubCall")
+	@Label("SynBioHub Call")
+	@Description("A call to SynBioHub while publishing")
+	@Category({ "UCF2SBOL", "SynBioHub" })
+	@Enabled(false)
+	@StackTrace(false)
+	public static class SynBioHubCall extends Event {
+		@Label("Operation")
+		String operation;
+
+		@Label("Target")
+		String target;
+
+		@Label("Payload")
+		@DataAmount(DataAmount.BYTES)
+		long bytes;
+
+		@Label("Top-Levels")
+		int topLevels;
+
+		@Label("Success")
+		boolean success;
+	}
+
+	private static boolean available() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the started event, or null if it is disabled
+	 */
+	public static RecordConversion beginRecord() {
+		if (!AVAILABLE) {
+			return null;
+		}
+		RecordConversion event = new RecordConversion();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	public static void commit(RecordConversion event, String collection, String name, int topLevels) {
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.collection = collection;
+			event.name = name;
+			event.topLevels = topLevels;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @return the started event, or null if it is disabled
+	 */
+	public static ValidationShard beginShard() {
+		if (!AVAILABLE) {
+			return null;
+		}
+		ValidationShard event = new ValidationShard();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * @param scope the document the shard validated
+	 */
+	public static void commit(ValidationShard event, int shard, int shards, SBOLDocument scope, int errors) {
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.shard = shard;
+			event.shards = shards;
+			event.topLevels = scope.getTopLevels().size();
+			event.errors = errors;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @return the started event, or null if it is disabled
+	 */
+	public static SynBioHubCall beginCall() {
+		if (!AVAILABLE) {
+			return null;
+		}
+		SynBioHubCall event = new SynBioHubCall();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * @param bytes size of the payload sent, or -1 if it is not known
+	 * @param topLevels number of top-levels sent
+	 */
+	public static void commit(SynBioHubCall event, String operation, Object target, long bytes, int topLevels,
+			boolean success) {
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.target = String.valueOf(target);
+			event.bytes = bytes;
+			event.topLevels = topLevels;
+			event.success = success;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,471 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.joda.time.DateTime;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
+import org.sbolstandard.core2.Activity;
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.ModuleDefinition;
+import org.sbolstandard.core2.SBOLConversionException;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLReader;
+import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.Sequence;
+import org.sbolstandard.core2.TopLevel;
+
+/**
+ * Reconverts only the UCF records that changed since the previous run. Records are grouped into units
+ * (a part by name; a gate by gate_name together with its gates and response_functions records; a sensor
+ * or reporter by name) and each unit is converted into its own shard, so the top-levels it produces are
+ * known. The hash file next to the output stores, per unit, a SHA-256 of its records and of the parts it
+ * uses, together with the identities of the top-levels it produced. It also stores a hash of the part
+ * type roles and the provenance mode; when either changes, every unit is converted again.
+ * <p>
+ * On the next run a unit is dirty when its hash changed or it was removed. Top-levels produced by dirty
+ * units are removed from the previous document and the dirty units are converted and merged again. A
+ * clean unit that shares a top-level with a dirty one, such as a repression module used by two gates, is
+ * treated as dirty as well, so shared top-levels are always rebuilt by all of their producers. The
+ * interactions of each unit are created in its own shard as well, which records the modules the unit
+ * produces, but the modules merged into the document come from one registry of all reconverted units,
+ * so the parameters of a shared regulation are combined as in a full conversion.
+ */
+public class IncrementalConverter {
+
+	private static final String HEADER = "# UCF2SBOL record hashes";
+	private static final String SETTINGS = "# settings\t";
+
+	private final File hashFile;
+	private final TreeMap<String,String> hashes = new TreeMap<String,String>();
+	private final TreeMap<String,Set<URI>> products = new TreeMap<String,Set<URI>>();
+	private final Set<String> converted = new TreeSet<String>();
+	private final Set<URI> created = new HashSet<URI>();
+
+	public IncrementalConverter(File hashFile) {
+		this.hashFile = hashFile;
+	}
+
+	/**
+	 * @return the hash file stored next to an output file
+	 */
+	public static File hashFile(File output) {
+		return new File(output.getPath() + ".hashes");
+	}
+
+	/**
+	 * @return the units that were converted by the last call to convert
+	 */
+	public Set<String> getConverted() {
+		return Collections.unmodifiableSet(converted);
+	}
+
+	/**
+	 * @return the identities of the top-levels that the last call to convert created or replaced
+	 */
+	public Set<URI> getCreated() {
+		return Collections.unmodifiableSet(created);
+	}
+
+	/**
+	 * Read the previous output, or return null if it or its hash file does not exist.
+	 */
+	public SBOLDocument load(File output) throws SBOLValidationException, IOException, SBOLConversionException {
+		if (!output.exists() || !hashFile.exists()) {
+			return null;
+		}
+		SBOLDocument document = SBOLReader.read(output);
+		document.setDefaultURIprefix(Cello2SBOL.uriPrefix);
+		document.setComplete(true);
+		document.setCreateDefaults(true);
+		return document;
+	}
+
+	/**
+	 * Update the previous document, or convert from scratch when it is null.
+	 *
+	 * @param createdDate the dcTerms:created date of the reconverted objects
+	 * @return the converted document
+	 */
+	public SBOLDocument convert(String pathToUCFFile, SBOLDocument previous, String createdDate)
+			throws SBOLValidationException, IOException, ParseException {
+		TreeMap<String,String> oldHashes = new TreeMap<String,String>();
+		TreeMap<String,Set<URI>> oldProducts = new TreeMap<String,Set<URI>>();
+		SBOLDocument document = previous;
+		if (document != null && !settings().equals(readHashes(oldHashes, oldProducts))) {
+			// Every unit depends on the settings, so start over as if there were no previous run
+			document = null;
+			oldHashes.clear();
+			oldProducts.clear();
+		}
+		if (document == null) {
+			document = Cello2SBOL.createDocument(true);
+			Cello2SBOL.createActivity(document);
+		} else {
+			Activity activity = document.getActivity("CelloUCF2sbol_Activity", Cello2SBOL.version);
+			activity.setEndedAtTime(DateTime.now());
+			Cello2SBOL.activityURI = activity.getIdentity();
+		}
+
+		// Group the records into units
+		TreeMap<String,JSONObject> parts = new TreeMap<String,JSONObject>();
+		TreeMap<String,JSONObject> gateParts = new TreeMap<String,JSONObject>();
+		TreeMap<String,JSONObject> sensors = new TreeMap<String,JSONObject>();
+		TreeMap<String,JSONObject> reporters = new TreeMap<String,JSONObject>();
+		HashMap<String,JSONObject> gatesMap = new HashMap<String,JSONObject>();
+		HashMap<String,JSONObject> responseMap = new HashMap<String,JSONObject>();
+		UCFReader reader = new UCFReader(pathToUCFFile, Cello2SBOL.conversionCollections);
+		JSONObject ucf;
+		while ((ucf = reader.next()) != null) {
+			String collection = (String) ucf.get("collection");
+			if (collection.equals("parts")) {
+				parts.put("parts:" + ucf.get("name"), ucf);
+			} else if (collection.equals("gate_parts")) {
+				gateParts.put("gate:" + ucf.get("gate_name"), ucf);
+			} else if (collection.equals("input_sensors")) {
+				sensors.put("input_sensors:" + ucf.get("name"), ucf);
+			} else if (collection.equals("output_reporters")) {
+				reporters.put("output_reporters:" + ucf.get("name"), ucf);
+			} else if (collection.equals("gates")) {
+				gatesMap.put((String)ucf.get("gate_name"), ucf);
+			} else if (collection.equals("response_functions")) {
+				responseMap.put((String)ucf.get("gate_name"), ucf);
+			}
+		}
+		reader.close();
+		Cello2SBOL.partTypes.check(parts.values());
+
+		hashes.clear();
+		for (Map.Entry<String,JSONObject> entry : parts.entrySet()) {
+			hashes.put(entry.getKey(), hash(Collections.singletonList(entry.getValue()), null));
+		}
+		for (Map.Entry<String,JSONObject> entry : gateParts.entrySet()) {
+			JSONObject gate = entry.getValue();
+			String gate_name = (String)gate.get("gate_name");
+			List<String> used = new ArrayList<String>();
+			for (Object cassette : (JSONArray)gate.get("expression_cassettes")) {
+				for (Object partId : (JSONArray)((JSONObject)cassette).get("cassette_parts")) {
+					used.add((String)partId);
+				}
+			}
+			hashes.put(entry.getKey(), hash(records(gate, gatesMap.get(gate_name), responseMap.get(gate_name)), used));
+		}
+		List<TreeMap<String,JSONObject>> deviceMaps = new ArrayList<TreeMap<String,JSONObject>>();
+		deviceMaps.add(sensors);
+		deviceMaps.add(reporters);
+		for (TreeMap<String,JSONObject> devices : deviceMaps) {
+			for (Map.Entry<String,JSONObject> entry : devices.entrySet()) {
+				List<String> used = new ArrayList<String>();
+				for (Object partId : (JSONArray)entry.getValue().get("parts")) {
+					used.add((String)partId);
+				}
+				hashes.put(entry.getKey(), hash(Collections.singletonList(entry.getValue()), used));
+			}
+		}
+
+		// Find the dirty units and close over shared top-levels
+		Set<String> dirty = new TreeSet<String>();
+		for (String unit : hashes.keySet()) {
+			if (!hashes.get(unit).equals(oldHashes.get(unit))) {
+				dirty.add(unit);
+			}
+		}
+		for (String unit : oldHashes.keySet()) {
+			if (!hashes.containsKey(unit)) {
+				dirty.add(unit);
+			}
+		}
+		HashMap<URI,Set<String>> producers = new HashMap<URI,Set<String>>();
+		for (Map.Entry<String,Set<URI>> entry : oldProducts.entrySet()) {
+			for (URI uri : entry.getValue()) {
+				Set<String> units = producers.get(uri);
+				if (units == null) {
+					units = new TreeSet<String>();
+					producers.put(uri, units);
+				}
+				units.add(entry.getKey());
+			}
+		}
+		List<String> pending = new ArrayList<String>(dirty);
+		while (!pending.isEmpty()) {
+			String unit = pending.remove(pending.size() - 1);
+			if (!oldProducts.containsKey(unit)) {
+				continue;
+			}
+			for (URI uri : oldProducts.get(unit)) {
+				for (String sharer : producers.get(uri)) {
+					if (dirty.add(sharer)) {
+						pending.add(sharer);
+					}
+				}
+			}
+		}
+
+		// Remove what the dirty units produced, keeping the products of clean units
+		products.clear();
+		Set<URI> stale = new HashSet<URI>();
+		for (Map.Entry<String,Set<URI>> entry : oldProducts.entrySet()) {
+			if (dirty.contains(entry.getKey())) {
+				stale.addAll(entry.getValue());
+			} else if (hashes.containsKey(entry.getKey())) {
+				products.put(entry.getKey(), entry.getValue());
+			}
+		}
+		remove(document, stale);
+
+		// Parts first, since the devices are assembled from the parts indexed in the document
+		converted.clear();
+		created.clear();
+		List<SBOLDocument> shards = new ArrayList<SBOLDocument>();
+		for (Map.Entry<String,JSONObject> entry : parts.entrySet()) {
+			if (dirty.contains(entry.getKey())) {
+				SBOLDocument shard = Cello2SBOL.createDocument(false);
+				Cello2SBOL.convertPartsToSBOL(shard, Collections.singletonList(entry.getValue()));
+				shards.add(record(entry.getKey(), shard));
+			}
+		}
+		ParallelConverter.merge(document, shards);
+		shards.clear();
+		PartIndex partIndex = Cello2SBOL.indexParts(document, gateParts.values(), sensors.values(), reporters.values());
+		InteractionRegistry allInteractions = new InteractionRegistry();
+		for (Map.Entry<String,JSONObject> entry : gateParts.entrySet()) {
+			if (dirty.contains(entry.getKey())) {
+				SBOLDocument shard = Cello2SBOL.createDocument(false);
+				InteractionRegistry interactions = new InteractionRegistry();
+				Cello2SBOL.convertGatePartsToSBOL(shard, partIndex, interactions, Collections.singletonList(entry.getValue()),
+						gatesMap, responseMap);
+				interactions.emit(shard);
+				allInteractions.addAll(interactions);
+				shards.add(record(entry.getKey(), shard));
+			}
+		}
+		for (Map.Entry<String,JSONObject> entry : sensors.entrySet()) {
+			if (dirty.contains(entry.getKey())) {
+				SBOLDocument shard = Cello2SBOL.createDocument(false);
+				InteractionRegistry interactions = new InteractionRegistry();
+				Cello2SBOL.convertInputSensorsToSBOL(shard, partIndex, interactions, Collections.singletonList(entry.getValue()));
+				interactions.emit(shard);
+				allInteractions.addAll(interactions);
+				shards.add(record(entry.getKey(), shard));
+			}
+		}
+		for (Map.Entry<String,JSONObject> entry : reporters.entrySet()) {
+			if (dirty.contains(entry.getKey())) {
+				SBOLDocument shard = Cello2SBOL.createDocument(false);
+				Cello2SBOL.convertOutputReportersToSBOL(shard, partIndex, Collections.singletonList(entry.getValue()));
+				shards.add(record(entry.getKey(), shard));
+			}
+		}
+		// Merged first, so the copies of the same modules in the unit shards are skipped
+		SBOLDocument interactionShard = Cello2SBOL.createDocument(false);
+		allInteractions.emit(interactionShard);
+		shards.add(0, interactionShard);
+		ParallelConverter.merge(document, shards);
+		Provenance.stamp(document, Cello2SBOL.activityURI, createdDate, Cello2SBOL.slimProvenance);
+		return document;
+	}
+
+	/**
+	 * Write the hashes and products of the last conversion. Call this only once the output is written.
+	 */
+	public void save() throws IOException {
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(hashFile),
+				StandardCharsets.UTF_8));
+		try {
+			writer.println(HEADER);
+			writer.println(SETTINGS + settings());
+			for (Map.Entry<String,String> entry : hashes.entrySet()) {
+				writer.print(entry.getKey() + "\t" + entry.getValue() + "\t");
+				Set<URI> uris = products.get(entry.getKey());
+				if (uris != null) {
+					String separator = "";
+					for (URI uri : new TreeSet<URI>(uris)) {
+						writer.print(separator + uri);
+						separator = " ";
+					}
+				}
+				writer.println();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private SBOLDocument record(String unit, SBOLDocument shard) {
+		Set<URI> uris = new HashSet<URI>();
+		for (TopLevel topLevel : shard.getTopLevels()) {
+			uris.add(topLevel.getIdentity());
+		}
+		products.put(unit, uris);
+		created.addAll(uris);
+		converted.add(unit);
+		return shard;
+	}
+
+	/**
+	 * @return the settings hash of the previous run, or null if the hash file has none
+	 */
+	private String readHashes(Map<String,String> oldHashes, Map<String,Set<URI>> oldProducts) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(hashFile),
+				StandardCharsets.UTF_8));
+		String settings = null;
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(SETTINGS)) {
+					settings = line.substring(SETTINGS.length());
+					continue;
+				}
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("\t", -1);
+				oldHashes.put(fields[0], fields[1]);
+				Set<URI> uris = new HashSet<URI>();
+				if (fields.length > 2 && !fields[2].isEmpty()) {
+					for (String uri : fields[2].split(" ")) {
+						uris.add(URI.create(uri));
+					}
+				}
+				oldProducts.put(fields[0], uris);
+			}
+		} finally {
+			reader.close();
+		}
+		return settings;
+	}
+
+	/**
+	 * SHA-256 of what the conversion of every unit depends on besides its records: the part type roles,
+	 * and the provenance mode, since objects kept from the previous run are not stamped again.
+	 */
+	private static String settings() {
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String,URI> role : new TreeMap<String,URI>(Cello2SBOL.partTypes.getRoles()).entrySet()) {
+			text.append(role.getKey()).append('=').append(role.getValue()).append('\n');
+		}
+		text.append("provenance=").append(Cello2SBOL.slimProvenance ? Provenance.SLIM : Provenance.FULL).append('\n');
+		return sha256(text.toString());
+	}
+
+	/**
+	 * Remove top-levels in reverse dependency order. Completeness is relaxed meanwhile, since the
+	 * stale top-levels may still reference each other while they are removed one by one.
+	 */
+	private static void remove(SBOLDocument document, Set<URI> stale) throws SBOLValidationException {
+		boolean complete = document.isComplete();
+		document.setComplete(false);
+		for (URI uri : stale) {
+			ModuleDefinition moduleDefinition = document.getModuleDefinition(uri);
+			if (moduleDefinition != null) {
+				document.removeModuleDefinition(moduleDefinition);
+			}
+		}
+		for (URI uri : stale) {
+			ComponentDefinition componentDefinition = document.getComponentDefinition(uri);
+			if (componentDefinition != null) {
+				document.removeComponentDefinition(componentDefinition);
+			}
+		}
+		for (URI uri : stale) {
+			Sequence sequence = document.getSequence(uri);
+			if (sequence != null) {
+				document.removeSequence(sequence);
+			}
+		}
+		document.setComplete(complete);
+	}
+
+	private static List<JSONObject> records(JSONObject... records) {
+		List<JSONObject> result = new ArrayList<JSONObject>();
+		for (JSONObject record : records) {
+			if (record != null) {
+				result.add(record);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * SHA-256 of the canonical JSON of the records, followed by the names of the parts they use.
+	 */
+	private String hash(List<JSONObject> records, List<String> usedParts) {
+		StringBuilder text = new StringBuilder();
+		for (JSONObject record : records) {
+			canonical(record, text);
+			text.append('\n');
+		}
+		if (usedParts != null) {
+			for (String partId : usedParts) {
+				text.append(partId).append('=').append(hashes.get("parts:" + partId)).append('\n');
+			}
+		}
+		return sha256(text.toString());
+	}
+
+	static String sha256(String text) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * JSON with object keys in sorted order, so that the hash does not depend on key order in the file.
+	 */
+	private static void canonical(Object value, StringBuilder text) {
+		if (value instanceof Map) {
+			TreeMap<String,Object> sorted = new TreeMap<String,Object>();
+			for (Object entry : ((Map<?,?>)value).entrySet()) {
+				sorted.put((String)((Map.Entry<?,?>)entry).getKey(), ((Map.Entry<?,?>)entry).getValue());
+			}
+			text.append('{');
+			String separator = "";
+			for (Map.Entry<String,Object> entry : sorted.entrySet()) {
+				text.append(separator).append(JSONValue.toJSONString(entry.getKey())).append(':');
+				canonical(entry.getValue(), text);
+				separator = ",";
+			}
+			text.append('}');
+		} else if (value instanceof List) {
+			text.append('[');
+			String separator = "";
+			for (Object element : (List<?>)value) {
+				text.append(separator);
+				canonical(element, text);
+				separator = ",";
+			}
+			text.append(']');
+		} else {
+			text.append(JSONValue.toJSONString(value));
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.sbolstandard.core2.Activity;
+import org.sbolstandard.core2.Association;
+import org.sbolstandard.core2.Component;
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.FunctionalComponent;
+import org.sbolstandard.core2.Module;
+import org.sbolstandard.core2.ModuleDefinition;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidate;
+import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.TopLevel;
+import org.sbolstandard.core2.Usage;
+
+/**
+ * Validates only the top-levels a conversion created or changed. Those top-levels and every top-level
+ * they reference, directly or through other references, are copied into a scratch document that is
+ * validated instead of the whole document, so that completeness is still checked for the changed part.
+ * <p>
+ * The mode is "incremental", "full" or "none"; incremental falls back to full validation when no change
+ * set is known.
+ */
+public class IncrementalValidator {
+
+	public static final String INCREMENTAL = "incremental";
+	public static final String FULL = "full";
+	public static final String NONE = "none";
+
+	/**
+	 * @param changed identities of the created or changed top-levels, or null if unknown
+	 * @param mode the validation mode, or null for full validation
+	 * @param parallel validator to shard the work over, or null to validate on the calling thread
+	 */
+	public static ValidationResult validate(SBOLDocument document, Collection<URI> changed, String mode,
+			ParallelValidator parallel) throws SBOLValidationException, IOException {
+		if (NONE.equals(mode)) {
+			return new ValidationResult();
+		}
+		SBOLDocument scope = document;
+		if (INCREMENTAL.equals(mode) && changed != null) {
+			scope = Cello2SBOL.createDocument(false);
+			for (URI uri : closure(document, changed)) {
+				scope.createCopy(document.getTopLevel(uri));
+			}
+		} else if (mode != null && !FULL.equals(mode) && !INCREMENTAL.equals(mode)) {
+			throw new IllegalArgumentException("Unknown validation mode " + mode);
+		}
+		if (parallel != null) {
+			return parallel.validate(scope);
+		}
+		long start = System.nanoTime();
+		ValidationResult result = new ValidationResult();
+		// SBOLValidate keeps its errors in static fields
+		FlightEvents.ValidationShard event = FlightEvents.beginShard();
+		synchronized (SBOLValidate.class) {
+			SBOLValidate.validateSBOL(scope,true,true,true);
+			result.addShard(SBOLValidate.getErrors());
+		}
+		FlightEvents.commit(event, 0, 1, scope, result.getErrors().size());
+		result.setMillis((System.nanoTime() - start) / 1000000);
+		return result;
+	}
+
+	/**
+	 * @return the given top-levels and every top-level of the document reachable from them
+	 */
+	static Set<URI> closure(SBOLDocument document, Collection<URI> roots) {
+		Set<URI> closure = new HashSet<URI>();
+		List<URI> pending = new ArrayList<URI>(roots);
+		while (!pending.isEmpty()) {
+			URI uri = pending.remove(pending.size() - 1);
+			TopLevel topLevel = document.getTopLevel(uri);
+			if (topLevel == null || !closure.add(uri)) {
+				continue;
+			}
+			pending.addAll(references(topLevel));
+		}
+		return closure;
+	}
+
+	private static List<URI> references(TopLevel topLevel) {
+		List<URI> references = new ArrayList<URI>();
+		references.addAll(topLevel.getWasGeneratedBys());
+		references.addAll(topLevel.getWasDerivedFroms());
+		if (topLevel instanceof ComponentDefinition) {
+			ComponentDefinition cd = (ComponentDefinition)topLevel;
+			references.addAll(cd.getSequenceURIs());
+			for (Component component : cd.getComponents()) {
+				references.add(component.getDefinitionURI());
+			}
+		} else if (topLevel instanceof ModuleDefinition) {
+			ModuleDefinition md = (ModuleDefinition)topLevel;
+			for (FunctionalComponent fc : md.getFunctionalComponents()) {
+				references.add(fc.getDefinitionURI());
+			}
+			for (Module module : md.getModules()) {
+				references.add(module.getDefinitionURI());
+			}
+			references.addAll(md.getModelURIs());
+		} else if (topLevel instanceof Activity) {
+			Activity activity = (Activity)topLevel;
+			for (Association association : activity.getAssociations()) {
+				references.add(association.getAgentURI());
+				if (association.getPlanURI() != null) {
+					references.add(association.getPlanURI());
+				}
+			}
+			for (Usage usage : activity.getUsages()) {
+				references.add(usage.getEntityURI());
+			}
+			references.addAll(activity.getWasInformedByURIs());
+		} else if (topLevel instanceof org.sbolstandard.core2.Collection) {
+			references.addAll(((org.sbolstandard.core2.Collection)topLevel).getMemberURIs());
+		}
+		return references;
+	}
+}
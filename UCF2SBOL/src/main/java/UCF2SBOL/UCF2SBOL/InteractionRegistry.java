@@ -0,0 +1,177 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidationException;
+
+/**
+ * Collects the interactions that gates and sensors imply while they are converted, and creates each of
+ * them once afterwards. Repression and activation modules are keyed by regulator and regulated
+ * component, complexes by their two reactants, which also covers the degradation module of the
+ * complex. When an interaction is requested more than once, parameters the first request left out are
+ * taken from later ones. The registry can be filled from several threads.
+ */
+public class InteractionRegistry {
+
+	public static final String REPRESSION = "repression";
+	public static final String ACTIVATION = "activation";
+
+	public static class Regulation {
+		private final String type;
+		private final String regulator;
+		private final String regulated;
+		private Double ymin;
+		private Double ymax;
+		private Double alpha;
+		private Double beta;
+
+		Regulation(String type, String regulator, String regulated) {
+			this.type = type;
+			this.regulator = regulator;
+			this.regulated = regulated;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public String getRegulator() {
+			return regulator;
+		}
+
+		public String getRegulated() {
+			return regulated;
+		}
+
+		public Double getYmin() {
+			return ymin;
+		}
+
+		public Double getYmax() {
+			return ymax;
+		}
+
+		public Double getAlpha() {
+			return alpha;
+		}
+
+		public Double getBeta() {
+			return beta;
+		}
+
+		void fill(Double ymin, Double ymax, Double alpha, Double beta) {
+			if (this.ymin == null) {
+				this.ymin = ymin;
+			}
+			if (this.ymax == null) {
+				this.ymax = ymax;
+			}
+			if (this.alpha == null) {
+				this.alpha = alpha;
+			}
+			if (this.beta == null) {
+				this.beta = beta;
+			}
+		}
+	}
+
+	private final LinkedHashSet<String> smallMolecules = new LinkedHashSet<String>();
+	private final LinkedHashMap<String,String[]> complexes = new LinkedHashMap<String,String[]>();
+	private final LinkedHashMap<String,Regulation> regulations = new LinkedHashMap<String,Regulation>();
+
+	public synchronized void smallMolecule(String id) {
+		smallMolecules.add(id);
+	}
+
+	/**
+	 * @return the id of the complex
+	 */
+	public synchronized String complex(String reactant1, String reactant2) {
+		String key = reactant1 + "_" + reactant2;
+		if (!complexes.containsKey(key)) {
+			complexes.put(key, new String[] { reactant1, reactant2 });
+		}
+		return key;
+	}
+
+	public void repression(String inhibitor, String inhibited, Double ymin, Double ymax, Double alpha, Double beta) {
+		regulation(REPRESSION, inhibitor, inhibited, ymin, ymax, alpha, beta);
+	}
+
+	public void activation(String activator, String promoter, Double ymin, Double ymax, Double alpha, Double beta) {
+		regulation(ACTIVATION, activator, promoter, ymin, ymax, alpha, beta);
+	}
+
+	private synchronized void regulation(String type, String regulator, String regulated,
+			Double ymin, Double ymax, Double alpha, Double beta) {
+		String key = regulator + "_" + regulated + "_" + type;
+		Regulation regulation = regulations.get(key);
+		if (regulation == null) {
+			regulation = new Regulation(type, regulator, regulated);
+			regulations.put(key, regulation);
+		}
+		regulation.fill(ymin, ymax, alpha, beta);
+	}
+
+	/**
+	 * Add the requests of another registry, as if they were made after those already in this one.
+	 */
+	public void addAll(InteractionRegistry other) {
+		for (String id : other.getSmallMolecules()) {
+			smallMolecule(id);
+		}
+		for (String[] reactants : other.getComplexes()) {
+			complex(reactants[0], reactants[1]);
+		}
+		for (Regulation regulation : other.getRegulations()) {
+			regulation(regulation.getType(), regulation.getRegulator(), regulation.getRegulated(),
+					regulation.getYmin(), regulation.getYmax(), regulation.getAlpha(), regulation.getBeta());
+		}
+	}
+
+	public synchronized List<String> getSmallMolecules() {
+		return new ArrayList<String>(smallMolecules);
+	}
+
+	/**
+	 * @return the reactant pairs of the complexes
+	 */
+	public synchronized List<String[]> getComplexes() {
+		return new ArrayList<String[]>(complexes.values());
+	}
+
+	public synchronized List<Regulation> getRegulations() {
+		return new ArrayList<Regulation>(regulations.values());
+	}
+
+	public synchronized boolean isEmpty() {
+		return smallMolecules.isEmpty() && complexes.isEmpty() && regulations.isEmpty();
+	}
+
+	/**
+	 * Create the collected small molecules, complexes and regulations in the document, each once, in
+	 * that order so that every module finds the definitions it refers to.
+	 */
+	public synchronized void emit(SBOLDocument document) throws SBOLValidationException {
+		for (String id : smallMolecules) {
+			document.createComponentDefinition(id, Cello2SBOL.version, ComponentDefinition.SMALL_MOLECULE);
+		}
+		for (String[] reactants : complexes.values()) {
+			Cello2SBOL.createComplex(document, reactants[0], reactants[1]);
+		}
+		for (Regulation regulation : regulations.values()) {
+			if (regulation.getType().equals(REPRESSION)) {
+				Cello2SBOL.createInhibition(document, regulation.getRegulator(), regulation.getRegulated(),
+						regulation.getYmin(), regulation.getYmax(), regulation.getAlpha(), regulation.getBeta());
+			} else {
+				Cello2SBOL.createActivation(document, regulation.getRegulator(), regulation.getRegulated(),
+						regulation.getYmin(), regulation.getYmax(), regulation.getAlpha(), regulation.getBeta());
+			}
+		}
+	}
+}
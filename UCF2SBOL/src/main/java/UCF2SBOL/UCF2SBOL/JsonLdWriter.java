@@ -0,0 +1,108 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+
+/**
+ * Writes triples as a JSON-LD document in expanded form: an array with one node object per subject.
+ * Only the node being received is held in memory; it is written out when the next subject starts, so a
+ * subject whose triples are not contiguous becomes several node objects with the same id, which
+ * JSON-LD merges.
+ */
+public class JsonLdWriter implements SBOLTriples.Sink, Flushable, Closeable {
+
+	private final Writer out;
+	private String subject;
+	private final List<String> types = new ArrayList<String>();
+	private final LinkedHashMap<String,List<String>> properties = new LinkedHashMap<String,List<String>>();
+	private boolean first = true;
+
+	public JsonLdWriter(Writer out) throws IOException {
+		this.out = out;
+		out.write("[");
+	}
+
+	public void resource(String subject, String predicate, String object) throws IOException {
+		start(subject);
+		if (predicate.equals(SBOLTriples.TYPE)) {
+			types.add(object);
+		} else {
+			value(predicate, "{\"@id\":\"" + JSONValue.escape(object) + "\"}");
+		}
+	}
+
+	public void literal(String subject, String predicate, String value) throws IOException {
+		start(subject);
+		value(predicate, "{\"@value\":\"" + JSONValue.escape(value) + "\"}");
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Write the last node and close the array, leaving the writer open.
+	 */
+	public void finish() throws IOException {
+		node();
+		out.write("\n]\n");
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		finish();
+		out.close();
+	}
+
+	private void start(String subject) throws IOException {
+		if (!subject.equals(this.subject)) {
+			node();
+			this.subject = subject;
+		}
+	}
+
+	private void value(String predicate, String value) {
+		List<String> values = properties.get(predicate);
+		if (values == null) {
+			values = new ArrayList<String>();
+			properties.put(predicate, values);
+		}
+		values.add(value);
+	}
+
+	private void node() throws IOException {
+		if (subject == null) {
+			return;
+		}
+		out.write(first ? "\n" : ",\n");
+		first = false;
+		out.write("{\"@id\":\"" + JSONValue.escape(subject) + "\"");
+		if (!types.isEmpty()) {
+			out.write(",\"@type\":[");
+			for (int i = 0; i < types.size(); i++) {
+				out.write((i > 0 ? "," : "") + "\"" + JSONValue.escape(types.get(i)) + "\"");
+			}
+			out.write("]");
+		}
+		for (Map.Entry<String,List<String>> property : properties.entrySet()) {
+			out.write(",\"" + JSONValue.escape(property.getKey()) + "\":[");
+			List<String> values = property.getValue();
+			for (int i = 0; i < values.size(); i++) {
+				out.write((i > 0 ? "," : "") + values.get(i));
+			}
+			out.write("]");
+		}
+		out.write("}");
+		subject = null;
+		types.clear();
+		properties.clear();
+	}
+}
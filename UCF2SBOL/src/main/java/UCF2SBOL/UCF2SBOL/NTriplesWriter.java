@@ -0,0 +1,77 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes triples as N-Triples, one line per triple, as they are received.
+ */
+public class NTriplesWriter implements SBOLTriples.Sink, Flushable, Closeable {
+
+	private final Writer out;
+	private long count;
+
+	public NTriplesWriter(Writer out) {
+		this.out = out;
+	}
+
+	public void resource(String subject, String predicate, String object) throws IOException {
+		iri(subject);
+		out.write(' ');
+		iri(predicate);
+		out.write(' ');
+		iri(object);
+		out.write(" .\n");
+		count++;
+	}
+
+	public void literal(String subject, String predicate, String value) throws IOException {
+		iri(subject);
+		out.write(' ');
+		iri(predicate);
+		out.write(" \"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\': out.write("\\\\"); break;
+			case '"': out.write("\\\""); break;
+			case '\n': out.write("\\n"); break;
+			case '\r': out.write("\\r"); break;
+			case '\t': out.write("\\t"); break;
+			default: out.write(c);
+			}
+		}
+		out.write("\" .\n");
+		count++;
+	}
+
+	/**
+	 * @return the number of triples written
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void iri(String iri) throws IOException {
+		out.write('<');
+		for (int i = 0; i < iri.length(); i++) {
+			char c = iri.charAt(i);
+			if (c <= ' ' || c == '<' || c == '>' || c == '"' || c == '{' || c == '}' || c == '|' || c == '^' || c == '`' || c == '\\') {
+				out.write(String.format("\\u%04X", (int)c));
+			} else {
+				out.write(c);
+			}
+		}
+		out.write('>');
+	}
+}
@@ -0,0 +1,192 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.simple.parser.ParseException;
+import org.sbolstandard.core2.SBOLConversionException;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLWriter;
+
+/**
+ * Writes a converted document to a file, or to standard output when the path is "-". RDF/XML and Turtle
+ * are written by libSBOLj; JSON-LD and N-Triples are streamed from the triples of the document. The
+ * output can be gzip compressed, and is always written through a buffer. JSON-LD and N-Triples can also
+ * be written from a {@link TripleSource} that never builds a document.
+ */
+public class OutputSink {
+
+	public static final String RDFXML = "rdfxml";
+	public static final String TURTLE = "turtle";
+	public static final String JSONLD = "jsonld";
+	public static final String NTRIPLES = "ntriples";
+
+	public static final String STDOUT = "-";
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Reports the triples to write.
+	 */
+	public interface TripleSource {
+		void write(SBOLTriples.Sink sink) throws IOException, ParseException;
+	}
+
+	private final String path;
+	private final String format;
+	private final boolean gzip;
+
+	/**
+	 * @param path the output file, or "-" for standard output
+	 * @param format the serialization, or null to choose it from the file extension
+	 * @param gzip whether to compress, or null to compress when the path ends with .gz
+	 */
+	public OutputSink(String path, String format, Boolean gzip) {
+		this.path = path;
+		this.gzip = gzip != null ? gzip : path.endsWith(".gz");
+		this.format = format != null ? format : formatOf(path);
+		if (!RDFXML.equals(this.format) && !TURTLE.equals(this.format) && !JSONLD.equals(this.format) && !NTRIPLES.equals(this.format)) {
+			throw new IllegalArgumentException("Unknown output format " + this.format);
+		}
+	}
+
+	/**
+	 * @return the sink configured by the output, format and gzip options, or null if there is no output option
+	 */
+	public static OutputSink fromOptions(Map<String,String> options) {
+		if (!options.containsKey("output")) {
+			return null;
+		}
+		return new OutputSink(options.get("output"), options.get("format"),
+				options.containsKey("gzip") ? Boolean.valueOf(options.get("gzip")) : null);
+	}
+
+	/**
+	 * @return the format implied by the extension of a path, ignoring a trailing .gz; RDF/XML if unknown
+	 */
+	public static String formatOf(String path) {
+		String name = path.toLowerCase();
+		if (name.endsWith(".gz")) {
+			name = name.substring(0, name.length() - 3);
+		}
+		if (name.endsWith(".ttl")) {
+			return TURTLE;
+		} else if (name.endsWith(".jsonld") || name.endsWith(".json")) {
+			return JSONLD;
+		} else if (name.endsWith(".nt")) {
+			return NTRIPLES;
+		}
+		return RDFXML;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public String getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return whether the format is written from triples rather than by libSBOLj
+	 */
+	public boolean isTripleFormat() {
+		return JSONLD.equals(format) || NTRIPLES.equals(format);
+	}
+
+	public void write(SBOLDocument document) throws IOException, SBOLConversionException {
+		OutputStream out = open();
+		try {
+			write(document, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write the document in the format of this sink to a stream, which is left open. The path and gzip
+	 * setting of the sink are not used.
+	 */
+	public void write(final SBOLDocument document, OutputStream out) throws IOException, SBOLConversionException {
+		try {
+			if (RDFXML.equals(format)) {
+				SBOLWriter.write(document, out, SBOLDocument.RDF);
+			} else if (TURTLE.equals(format)) {
+				SBOLWriter.write(document, out, SBOLDocument.TURTLE);
+			} else {
+				writeTriples(out, new TripleSource() {
+					public void write(SBOLTriples.Sink sink) throws IOException {
+						new SBOLTriples(sink).write(document);
+					}
+				});
+			}
+		} catch (ParseException e) {
+			// Documents are not parsed
+			throw new IOException(e);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Write the triples of a source as JSON-LD or N-Triples.
+	 */
+	public void write(TripleSource source) throws IOException, ParseException {
+		if (!isTripleFormat()) {
+			throw new IllegalStateException("Only JSON-LD and N-Triples can be written from triples, not " + format);
+		}
+		OutputStream out = open();
+		try {
+			writeTriples(out, source);
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeTriples(OutputStream out, TripleSource source) throws IOException, ParseException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+		if (JSONLD.equals(format)) {
+			JsonLdWriter jsonLd = new JsonLdWriter(writer);
+			source.write(jsonLd);
+			jsonLd.finish();
+		} else {
+			source.write(new NTriplesWriter(writer));
+		}
+		writer.flush();
+	}
+
+	private OutputStream open() throws IOException {
+		OutputStream out;
+		if (STDOUT.equals(path)) {
+			// Keep standard output open for whatever is printed afterwards
+			out = new FilterOutputStream(System.out) {
+				public void write(byte[] b, int off, int len) throws IOException {
+					this.out.write(b, off, len);
+				}
+
+				public void close() throws IOException {
+					flush();
+				}
+			};
+		} else {
+			File file = new File(path);
+			if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			out = new FileOutputStream(file);
+		}
+		if (gzip) {
+			out = new GZIPOutputStream(out, BUFFER_SIZE);
+		}
+		return new BufferedOutputStream(out, BUFFER_SIZE);
+	}
+}
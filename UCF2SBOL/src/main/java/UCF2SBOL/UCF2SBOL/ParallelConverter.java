@@ -0,0 +1,189 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.json.simple.JSONObject;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.TopLevel;
+
+/**
+ * Converts UCF records on a fork-join pool. Records are sorted and split into shards that are each
+ * converted into their own SBOLDocument, and the shards are then merged into the target document in
+ * shard order so the result does not depend on scheduling. Parts are converted and merged first; the
+ * gate, sensor and reporter shards only start once that barrier is passed and the parts they use are
+ * indexed from the target document. The interactions the shards collect are created once, after the
+ * last merge.
+ */
+public class ParallelConverter {
+
+	private static final int DEFAULT_SHARD_SIZE = 16;
+
+	private final ForkJoinPool pool;
+	private final int shardSize;
+
+	public ParallelConverter(int parallelism) {
+		this(parallelism, DEFAULT_SHARD_SIZE);
+	}
+
+	public ParallelConverter(int parallelism, int shardSize) {
+		this.pool = new ForkJoinPool(parallelism);
+		this.shardSize = shardSize;
+	}
+
+	public void convert(SBOLDocument document, HashMap<String,JSONObject> partsMap, Collection<JSONObject> gate_partsArr,
+			final HashMap<String,JSONObject> gatesMap, final HashMap<String,JSONObject> responseMap,
+			Collection<JSONObject> input_sensorsArr, Collection<JSONObject> output_reportersArr) throws SBOLValidationException
+	{
+		ShardTask parts = new ShardTask(sort(partsMap.values(), "name")) {
+			void convert(SBOLDocument shard, List<JSONObject> records) throws SBOLValidationException {
+				Cello2SBOL.convertPartsToSBOL(shard, records);
+			}
+		};
+		merge(document, invoke(parts));
+		final PartIndex partIndex = Cello2SBOL.indexParts(document, gate_partsArr, input_sensorsArr, output_reportersArr);
+		final InteractionRegistry interactions = new InteractionRegistry();
+
+		ShardTask gates = new ShardTask(sort(gate_partsArr, "gate_name")) {
+			void convert(SBOLDocument shard, List<JSONObject> records) throws SBOLValidationException {
+				Cello2SBOL.convertGatePartsToSBOL(shard, partIndex, interactions, records, gatesMap, responseMap);
+			}
+		};
+		ShardTask sensors = new ShardTask(sort(input_sensorsArr, "name")) {
+			void convert(SBOLDocument shard, List<JSONObject> records) throws SBOLValidationException {
+				Cello2SBOL.convertInputSensorsToSBOL(shard, partIndex, interactions, records);
+			}
+		};
+		ShardTask reporters = new ShardTask(sort(output_reportersArr, "name")) {
+			void convert(SBOLDocument shard, List<JSONObject> records) throws SBOLValidationException {
+				Cello2SBOL.convertOutputReportersToSBOL(shard, partIndex, records);
+			}
+		};
+		pool.execute(gates);
+		pool.execute(sensors);
+		pool.execute(reporters);
+		List<SBOLDocument> gateShards = join(gates);
+		List<SBOLDocument> sensorShards = join(sensors);
+		List<SBOLDocument> reporterShards = join(reporters);
+		merge(document, gateShards);
+		merge(document, sensorShards);
+		merge(document, reporterShards);
+		interactions.emit(document);
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Copy the top-levels of each shard into the document. Top-levels that an earlier shard already
+	 * contributed, such as a repression module shared by two gates, are skipped.
+	 */
+	static void merge(SBOLDocument document, List<SBOLDocument> shards) throws SBOLValidationException {
+		for (SBOLDocument shard : shards) {
+			// Sequences before the definitions that use them, so the complete document accepts each copy
+			copy(document, shard.getSequences());
+			copy(document, shard.getComponentDefinitions());
+			copy(document, shard.getModuleDefinitions());
+		}
+	}
+
+	private static void copy(SBOLDocument document, Collection<? extends TopLevel> topLevels) throws SBOLValidationException {
+		List<TopLevel> sorted = new ArrayList<TopLevel>(topLevels);
+		Collections.sort(sorted, new Comparator<TopLevel>() {
+			public int compare(TopLevel a, TopLevel b) {
+				return a.getIdentity().compareTo(b.getIdentity());
+			}
+		});
+		for (TopLevel topLevel : sorted) {
+			if (document.getTopLevel(topLevel.getIdentity()) == null) {
+				document.createCopy(topLevel);
+			}
+		}
+	}
+
+	private static List<JSONObject> sort(Collection<JSONObject> records, final String key) {
+		List<JSONObject> sorted = new ArrayList<JSONObject>(records);
+		Collections.sort(sorted, new Comparator<JSONObject>() {
+			public int compare(JSONObject a, JSONObject b) {
+				return ((String)a.get(key)).compareTo((String)b.get(key));
+			}
+		});
+		return sorted;
+	}
+
+	private List<SBOLDocument> invoke(ShardTask task) throws SBOLValidationException {
+		pool.execute(task);
+		return join(task);
+	}
+
+	private static List<SBOLDocument> join(ShardTask task) throws SBOLValidationException {
+		try {
+			return task.join();
+		} catch (ShardException e) {
+			// join() may rethrow a copy of the exception that wraps the original
+			Throwable cause = e.getCause();
+			while (cause instanceof ShardException) {
+				cause = cause.getCause();
+			}
+			throw (SBOLValidationException)cause;
+		}
+	}
+
+	private abstract class ShardTask extends RecursiveTask<List<SBOLDocument>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<JSONObject> records;
+
+		ShardTask(List<JSONObject> records) {
+			this.records = records;
+		}
+
+		abstract void convert(SBOLDocument shard, List<JSONObject> records) throws SBOLValidationException;
+
+		protected List<SBOLDocument> compute() {
+			if (records.size() <= shardSize) {
+				SBOLDocument shard = Cello2SBOL.createDocument(false);
+				try {
+					convert(shard, records);
+				} catch (SBOLValidationException e) {
+					throw new ShardException(e);
+				}
+				return Collections.singletonList(shard);
+			}
+			int middle = records.size() / 2;
+			final ShardTask outer = this;
+			ShardTask left = new ShardTask(records.subList(0, middle)) {
+				void convert(SBOLDocument shard, List<JSONObject> records) throws SBOLValidationException {
+					outer.convert(shard, records);
+				}
+			};
+			ShardTask right = new ShardTask(records.subList(middle, records.size())) {
+				void convert(SBOLDocument shard, List<JSONObject> records) throws SBOLValidationException {
+					outer.convert(shard, records);
+				}
+			};
+			left.fork();
+			List<SBOLDocument> shards = new ArrayList<SBOLDocument>(right.compute());
+			shards.addAll(0, left.join());
+			return shards;
+		}
+	}
+
+	private static class ShardException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		ShardException(SBOLValidationException cause) {
+			super(cause);
+		}
+	}
+}
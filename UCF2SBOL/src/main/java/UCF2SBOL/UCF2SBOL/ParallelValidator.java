@@ -0,0 +1,218 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidate;
+import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.TopLevel;
+
+/**
+ * Validates a document in shards on several threads. SBOLValidate collects its errors in static fields,
+ * so each worker owns a class loader that loads libSBOLj and this package again, giving it a private copy
+ * of that state. The top-levels are split into shards in identity order; each shard is copied together
+ * with the top-levels it references, so completeness can be checked, and handed to a worker as a snapshot.
+ * <p>
+ * Documents that a snapshot cannot represent are validated on the calling thread instead.
+ */
+public class ParallelValidator {
+
+	private final int workers;
+	private final ExecutorService pool;
+	private final BlockingQueue<Method> validators;
+
+	public ParallelValidator(int workers) {
+		this.workers = workers;
+		this.pool = Executors.newFixedThreadPool(workers);
+		this.validators = new ArrayBlockingQueue<Method>(workers);
+		URL[] urls = new URL[] {
+				SBOLDocument.class.getProtectionDomain().getCodeSource().getLocation(),
+				ParallelValidator.class.getProtectionDomain().getCodeSource().getLocation() };
+		for (int i = 0; i < workers; i++) {
+			try {
+				Class<?> isolated = Class.forName(ParallelValidator.class.getName(), true,
+						new IsolatingClassLoader(urls, ParallelValidator.class.getClassLoader()));
+				Method validator = isolated.getDeclaredMethod("validateShard", byte[].class);
+				// The isolated class is in a different runtime package
+				validator.setAccessible(true);
+				validators.add(validator);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	public ValidationResult validate(SBOLDocument document) throws SBOLValidationException, IOException {
+		long start = System.nanoTime();
+		ValidationResult result = new ValidationResult();
+		if (!SnapshotCache.supported(document)) {
+			FlightEvents.ValidationShard event = FlightEvents.beginShard();
+			synchronized (SBOLValidate.class) {
+				SBOLValidate.validateSBOL(document,true,true,true);
+				result.addShard(SBOLValidate.getErrors());
+			}
+			FlightEvents.commit(event, 0, 1, document, result.getErrors().size());
+			result.setMillis((System.nanoTime() - start) / 1000000);
+			return result;
+		}
+		List<URI> identities = new ArrayList<URI>();
+		for (TopLevel topLevel : document.getTopLevels()) {
+			identities.add(topLevel.getIdentity());
+		}
+		Collections.sort(identities);
+		int shardSize = Math.max(1, (identities.size() + workers - 1) / workers);
+		int shards = (identities.size() + shardSize - 1) / shardSize;
+		List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+		for (int i = 0; i < identities.size(); i += shardSize) {
+			futures.add(pool.submit(new Shard(document, identities.subList(i, Math.min(i + shardSize, identities.size())),
+					i / shardSize, shards)));
+		}
+		for (Future<List<String>> future : futures) {
+			try {
+				result.addShard(future.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof Error) {
+					throw (Error)cause;
+				}
+				if (cause.getClass().getName().equals(SBOLValidationException.class.getName())) {
+					throw unisolate((Exception)cause);
+				}
+				if (cause instanceof IOException) {
+					throw (IOException)cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+		result.setMillis((System.nanoTime() - start) / 1000000);
+		return result;
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * A worker throws its isolated copy of SBOLValidationException, which is not an instance of ours and
+	 * has no public constructor, so the exception is copied into our classes through serialization.
+	 */
+	private static SBOLValidationException unisolate(Exception isolated) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(isolated);
+			out.close();
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())) {
+				protected Class<?> resolveClass(ObjectStreamClass type) throws IOException, ClassNotFoundException {
+					return Class.forName(type.getName(), false, ParallelValidator.class.getClassLoader());
+				}
+			};
+			return (SBOLValidationException)in.readObject();
+		} catch (IOException e) {
+			throw new IllegalStateException(isolated);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(isolated);
+		}
+	}
+
+	/**
+	 * Entry point called through the isolated class loader of a worker.
+	 */
+	static List<String> validateShard(byte[] snapshot) throws IOException, SBOLValidationException {
+		SBOLDocument shard = SnapshotCache.fromBytes(snapshot);
+		SBOLValidate.clearErrors();
+		SBOLValidate.validateSBOL(shard,true,true,true);
+		return new ArrayList<String>(SBOLValidate.getErrors());
+	}
+
+	private class Shard implements Callable<List<String>> {
+
+		private final SBOLDocument document;
+		private final List<URI> roots;
+		private final int index;
+		private final int count;
+
+		Shard(SBOLDocument document, List<URI> roots, int index, int count) {
+			this.document = document;
+			this.roots = roots;
+			this.index = index;
+			this.count = count;
+		}
+
+		@SuppressWarnings("unchecked")
+		public List<String> call() throws Exception {
+			FlightEvents.ValidationShard event = FlightEvents.beginShard();
+			SBOLDocument shard = Cello2SBOL.createDocument(false);
+			for (URI uri : IncrementalValidator.closure(document, roots)) {
+				shard.createCopy(document.getTopLevel(uri));
+			}
+			byte[] snapshot = SnapshotCache.toBytes(shard);
+			Method validator = validators.take();
+			try {
+				List<String> errors = (List<String>)validator.invoke(null, snapshot);
+				FlightEvents.commit(event, index, count, shard, errors.size());
+				return errors;
+			} catch (InvocationTargetException e) {
+				if (e.getCause() instanceof Error) {
+					throw (Error)e.getCause();
+				}
+				throw (Exception)e.getCause();
+			} finally {
+				validators.put(validator);
+			}
+		}
+	}
+
+	/**
+	 * Loads libSBOLj and this package itself rather than delegating to its parent.
+	 */
+	private static class IsolatingClassLoader extends URLClassLoader {
+
+		IsolatingClassLoader(URL[] urls, ClassLoader parent) {
+			super(urls, parent);
+		}
+
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!name.startsWith("org.sbolstandard.core2.") && !name.startsWith(ParallelValidator.class.getPackage().getName() + ".")) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> loaded = findLoadedClass(name);
+				if (loaded == null) {
+					try {
+						loaded = findClass(name);
+					} catch (ClassNotFoundException e) {
+						loaded = super.loadClass(name, resolve);
+					}
+				}
+				if (resolve) {
+					resolveClass(loaded);
+				}
+				return loaded;
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SequenceOntology;
+
+/**
+ * Resolves the parts that gates, sensors and reporters are made of. The index is filled once the parts
+ * are converted, with every part the devices use, and each part is then looked up by id. Parts without
+ * a definition or sequence are collected while the index is filled and reported together by
+ * {@link #check()}, before any device is converted.
+ */
+public class PartIndex {
+
+	private static final URI GRNA = URI.create(Cello2SBOL.so + "SO:0001264");
+
+	public static class Part {
+		private final String id;
+		private final URI definition;
+		private final int length;
+		private final boolean cds;
+		private final boolean grna;
+
+		Part(String id, URI definition, int length, boolean cds, boolean grna) {
+			this.id = id;
+			this.definition = definition;
+			this.length = length;
+			this.cds = cds;
+			this.grna = grna;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public URI getDefinition() {
+			return definition;
+		}
+
+		/**
+		 * @return the number of bases in the sequence of the part
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		public boolean isCDS() {
+			return cds;
+		}
+
+		public boolean isGRNA() {
+			return grna;
+		}
+
+		/**
+		 * @return the id of the protein a coding sequence produces, or null if the part is not one
+		 */
+		public String getProteinId() {
+			return cds ? id + "_protein" : null;
+		}
+
+		/**
+		 * @return the id of the RNA a guide RNA part produces, or null if the part is not one
+		 */
+		public String getRNAId() {
+			return grna ? id + "_rna" : null;
+		}
+	}
+
+	private final SBOLDocument partsDocument;
+	private final SequenceStore sequences;
+	private final HashMap<String,Part> parts = new HashMap<String,Part>();
+	private final LinkedHashMap<String,List<String>> missing = new LinkedHashMap<String,List<String>>();
+
+	public PartIndex(SBOLDocument partsDocument, SequenceStore sequences) {
+		this.partsDocument = partsDocument;
+		this.sequences = sequences;
+	}
+
+	public SequenceStore getSequences() {
+		return sequences;
+	}
+
+	/**
+	 * Index the parts a device uses. Parts that cannot be resolved are remembered for {@link #check()}.
+	 */
+	public void add(String device, List<String> partIds) {
+		for (String partId : partIds) {
+			if (parts.containsKey(partId)) {
+				continue;
+			}
+			ComponentDefinition cd = partsDocument.getComponentDefinition(partId, Cello2SBOL.version);
+			if (cd == null || partsDocument.getSequence(partId + "_sequence", Cello2SBOL.version) == null) {
+				List<String> devices = missing.get(partId);
+				if (devices == null) {
+					devices = new ArrayList<String>();
+					missing.put(partId, devices);
+				}
+				if (!devices.contains(device)) {
+					devices.add(device);
+				}
+				continue;
+			}
+			parts.put(partId, new Part(partId, cd.getIdentity(), sequences.length(partId),
+					cd.getRoles().contains(SequenceOntology.CDS), cd.getRoles().contains(GRNA)));
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException naming every part that was used but not found, and where it was used
+	 */
+	public void check() {
+		if (missing.isEmpty()) {
+			return;
+		}
+		StringBuilder message = new StringBuilder("Parts used but not defined in the UCF file:");
+		for (Map.Entry<String,List<String>> entry : missing.entrySet()) {
+			message.append("\n ").append(entry.getKey()).append(" used by ");
+			for (int i = 0; i < entry.getValue().size(); i++) {
+				message.append(i > 0 ? ", " : "").append(entry.getValue().get(i));
+			}
+		}
+		throw new IllegalArgumentException(message.toString());
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the part was not indexed
+	 */
+	public Part get(String partId) {
+		Part part = parts.get(partId);
+		if (part == null) {
+			throw new IllegalArgumentException("Part " + partId + " is not indexed");
+		}
+		return part;
+	}
+
+	public int size() {
+		return parts.size();
+	}
+}
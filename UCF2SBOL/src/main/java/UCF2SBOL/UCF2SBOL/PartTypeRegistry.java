@@ -0,0 +1,127 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Maps UCF part types to Sequence Ontology roles. The mapping is read from the part-types.properties
+ * resource, and can be extended or overridden by a properties file of the same form, so new part types
+ * need no code changes. Values are SO terms such as SO:0000167 or absolute URIs. A registry is
+ * immutable once built.
+ */
+public class PartTypeRegistry {
+
+	private static final String RESOURCE = "/part-types.properties";
+
+	private static PartTypeRegistry defaultRegistry;
+
+	private final Map<String,URI> roles;
+
+	private PartTypeRegistry(Map<String,URI> roles) {
+		this.roles = Collections.unmodifiableMap(roles);
+	}
+
+	/**
+	 * @return the registry read from the part-types.properties resource
+	 */
+	public static synchronized PartTypeRegistry getDefault() {
+		if (defaultRegistry == null) {
+			InputStream in = PartTypeRegistry.class.getResourceAsStream(RESOURCE);
+			if (in == null) {
+				throw new IllegalStateException("Missing resource " + RESOURCE);
+			}
+			try {
+				try {
+					defaultRegistry = new PartTypeRegistry(read(in, new HashMap<String,URI>()));
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return defaultRegistry;
+	}
+
+	/**
+	 * @return a registry with the types of this one and those of a properties file, which take precedence
+	 */
+	public PartTypeRegistry extend(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return new PartTypeRegistry(read(in, new HashMap<String,URI>(roles)));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the type is not registered
+	 */
+	public URI getRole(String type) {
+		URI role = roles.get(type);
+		if (role == null) {
+			throw new IllegalArgumentException("Part type " + type + " not found");
+		}
+		return role;
+	}
+
+	public boolean contains(String type) {
+		return roles.containsKey(type);
+	}
+
+	public Map<String,URI> getRoles() {
+		return roles;
+	}
+
+	/**
+	 * Check the types of part records before any of them is converted.
+	 *
+	 * @throws IllegalArgumentException naming every unknown type and the parts that have it
+	 */
+	public void check(Collection<JSONObject> parts) {
+		TreeMap<String,StringBuilder> unknown = new TreeMap<String,StringBuilder>();
+		for (JSONObject part : parts) {
+			String type = String.valueOf(part.get("type"));
+			if (!roles.containsKey(type)) {
+				StringBuilder names = unknown.get(type);
+				if (names == null) {
+					unknown.put(type, new StringBuilder((String)part.get("name")));
+				} else {
+					names.append(", ").append(part.get("name"));
+				}
+			}
+		}
+		if (unknown.isEmpty()) {
+			return;
+		}
+		StringBuilder message = new StringBuilder("Unknown part types, add them with --part-types=<file>:");
+		for (Map.Entry<String,StringBuilder> entry : unknown.entrySet()) {
+			message.append("\n ").append(entry.getKey()).append(" used by ").append(entry.getValue());
+		}
+		throw new IllegalArgumentException(message.toString());
+	}
+
+	private static Map<String,URI> read(InputStream in, Map<String,URI> roles) throws IOException {
+		Properties properties = new Properties();
+		properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+		for (String type : properties.stringPropertyNames()) {
+			String role = properties.getProperty(type).trim();
+			roles.put(type, URI.create(role.startsWith("SO:") ? Cello2SBOL.so + role : role));
+		}
+		return roles;
+	}
+}
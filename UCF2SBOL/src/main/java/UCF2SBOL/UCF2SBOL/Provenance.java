@@ -0,0 +1,71 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.net.URI;
+
+import javax.xml.namespace.QName;
+
+import org.sbolstandard.core2.Activity;
+import org.sbolstandard.core2.Annotation;
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.Identified;
+import org.sbolstandard.core2.ModuleDefinition;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.Sequence;
+
+/**
+ * Records how the converted objects were made, once the conversion is done. Every ComponentDefinition,
+ * Sequence and ModuleDefinition is marked as generated by the conversion Activity. In full mode each of
+ * them also gets a dcTerms:created date; in slim mode only the Activity does, which saves a triple per
+ * object. Objects that already carry the Activity or a date, such as those an incremental conversion
+ * kept from an earlier run, are left as they are.
+ */
+public class Provenance {
+
+	public static final String FULL = "full";
+	public static final String SLIM = "slim";
+
+	public static final QName CREATED = new QName(Cello2SBOL.dcTermsNS, "created", "dcTerms");
+
+	/**
+	 * @return whether a --provenance option value asks for slim provenance; full when it is null
+	 */
+	public static boolean isSlim(String mode) {
+		if (mode == null || mode.equals(FULL)) {
+			return false;
+		} else if (mode.equals(SLIM)) {
+			return true;
+		}
+		throw new IllegalArgumentException("Unknown provenance mode " + mode);
+	}
+
+	public static void stamp(SBOLDocument document, URI activityURI, String createdDate, boolean slim)
+			throws SBOLValidationException {
+		for (ComponentDefinition cd : document.getComponentDefinitions()) {
+			stamp(cd, activityURI, createdDate, slim);
+		}
+		for (Sequence sequence : document.getSequences()) {
+			stamp(sequence, activityURI, createdDate, slim);
+		}
+		for (ModuleDefinition md : document.getModuleDefinitions()) {
+			stamp(md, activityURI, createdDate, slim);
+		}
+		Activity activity = document.getActivity(activityURI);
+		if (slim && activity != null) {
+			// The Activity carries the date of the latest conversion
+			Annotation created = activity.getAnnotation(CREATED);
+			if (created != null) {
+				activity.removeAnnotation(created);
+			}
+			activity.createAnnotation(CREATED, createdDate);
+		}
+	}
+
+	private static void stamp(Identified identified, URI activityURI, String createdDate, boolean slim)
+			throws SBOLValidationException {
+		identified.addWasGeneratedBy(activityURI);
+		if (!slim && identified.getAnnotation(CREATED) == null) {
+			identified.createAnnotation(CREATED, createdDate);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the publish steps that completed, one line per step, so that a failed publish can be resumed
+ * without creating the collection again or repeating uploads that already succeeded. A step is appended
+ * and flushed as soon as it completes. The journal starts with the source it belongs to, the UCF file
+ * hash and the collection, and a resumed run refuses a journal written for a different source.
+ */
+public class PublishJournal implements Closeable {
+
+	private static final String HEADER = "# UCF2SBOL publish journal";
+	private static final String SOURCE = "source";
+
+	public static final String COLLECTION = "collection";
+	public static final String UCF_FILE = "ucf";
+	public static final String DOCUMENT = "document";
+
+	private final File file;
+	private final Set<String> done = new HashSet<String>();
+	private final PrintWriter writer;
+
+	/**
+	 * @param source identifies the UCF file and collection being published
+	 * @param resume keep the steps of an existing journal instead of starting a new one
+	 */
+	public PublishJournal(File file, String source, boolean resume) throws IOException {
+		this.file = file;
+		boolean append = resume && file.exists();
+		if (append) {
+			read(source);
+		}
+		writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, append), StandardCharsets.UTF_8));
+		if (!append) {
+			writer.println(HEADER);
+			writer.println(SOURCE + "\t" + source);
+			writer.flush();
+		}
+	}
+
+	/**
+	 * @return the journal kept in the temporary directory for a collection
+	 */
+	public static File journalFile(String tmpDir, String collectionId, String collectionVersion) {
+		return new File(tmpDir, collectionId + "_" + collectionVersion + ".journal");
+	}
+
+	/**
+	 * @return the key of a step made of several parts
+	 */
+	public static String step(String... parts) {
+		StringBuilder step = new StringBuilder();
+		for (String part : parts) {
+			if (step.length() > 0) {
+				step.append('\t');
+			}
+			step.append(part);
+		}
+		return step.toString();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public synchronized boolean isDone(String step) {
+		return done.contains(step);
+	}
+
+	/**
+	 * @return the number of steps recorded, including those of the run being resumed
+	 */
+	public synchronized int size() {
+		return done.size();
+	}
+
+	public synchronized void record(String step) throws IOException {
+		if (!done.add(step)) {
+			return;
+		}
+		writer.println(step);
+		writer.flush();
+		if (writer.checkError()) {
+			throw new IOException("Unable to write to " + file);
+		}
+	}
+
+	public synchronized void close() {
+		writer.close();
+	}
+
+	private void read(String source) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			String line;
+			boolean matched = false;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				if (line.startsWith(SOURCE + "\t")) {
+					if (!line.substring(SOURCE.length() + 1).equals(source)) {
+						throw new IOException("Journal " + file + " was written for a different UCF file or collection");
+					}
+					matched = true;
+				} else if (matched) {
+					done.add(line);
+				}
+			}
+			if (!matched) {
+				throw new IOException("Journal " + file + " does not name its source");
+			}
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,502 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.sbolstandard.core2.Annotation;
+import org.sbolstandard.core2.Component;
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.Identified;
+import org.sbolstandard.core2.Interaction;
+import org.sbolstandard.core2.Location;
+import org.sbolstandard.core2.ModuleDefinition;
+import org.sbolstandard.core2.Participation;
+import org.sbolstandard.core2.Range;
+import org.sbolstandard.core2.SBOLConversionException;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLReader;
+import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.SequenceAnnotation;
+import org.sbolstandard.core2.SystemsBiologyOntology;
+
+/**
+ * Rebuilds the parts, gates, response_functions, gate_parts, input_sensors and output_reporters
+ * collections of a UCF file from an SBOL document of the form Cello2SBOL writes, such as a library
+ * curated in SynBioHub. The document is indexed before anything is exported: the part type of each
+ * role, the cello annotations of each device, and the productions, complexes and regulations of the
+ * modules. Every record is then built from lookups in these indexes, so an export takes time linear in
+ * the size of the document.
+ * <p>
+ * An export does not restore what the conversion to SBOL drops:
+ * <ul>
+ * <li>The other collections of a UCF file, such as the header and the cytometry data, are kept as
+ * attachments and are not rebuilt.</li>
+ * <li>The cassettes of a gate are joined into one device, so a gate with several cassettes comes back
+ * with one expression cassette holding all of its parts, mapped to the first variable.</li>
+ * <li>Hyphens in part names are replaced by underscores, and come back as underscores.</li>
+ * <li>Sensor signal levels are always written as a parameters array.</li>
+ * <li>When several part types share a role, the type that sorts first is written.</li>
+ * </ul>
+ *
+ * <pre>
+ * Cello2SBOL --export-ucf=&lt;file|-&gt; library.xml
+ * </pre>
+ */
+public class SBOL2UCF {
+
+	static final String INPUT_SENSOR = "input_sensor";
+	static final String OUTPUT_REPORTER = "output_reporter";
+	static final String OFF_THRESHOLD = "_off_threshold";
+	static final String ON_THRESHOLD = "_on_threshold";
+
+	/**
+	 * Cello annotations of a gate that are not parameters of its response function.
+	 */
+	private static final List<String> GATE_ANNOTATIONS = Arrays.asList("family", "gate_type",
+			"group_name", "color_hexcode", "response_function", "tandem_efficiency_factor");
+
+	private static final Comparator<ComponentDefinition> BY_DISPLAY_ID = new Comparator<ComponentDefinition>() {
+		public int compare(ComponentDefinition a, ComponentDefinition b) {
+			return a.getDisplayId().compareTo(b.getDisplayId());
+		}
+	};
+
+	private final HashMap<URI,String> roleTypes = new HashMap<URI,String>();
+	private final HashMap<String,String> partTypes = new HashMap<String,String>();
+	private final List<ComponentDefinition> parts = new ArrayList<ComponentDefinition>();
+	private final List<ComponentDefinition> gates = new ArrayList<ComponentDefinition>();
+	private final List<ComponentDefinition> sensors = new ArrayList<ComponentDefinition>();
+	private final List<ComponentDefinition> reporters = new ArrayList<ComponentDefinition>();
+	private final HashMap<URI,Map<String,Annotation>> annotations = new HashMap<URI,Map<String,Annotation>>();
+	private final HashMap<String,List<String>> products = new HashMap<String,List<String>>();
+	private final HashMap<String,List<String>> complexes = new HashMap<String,List<String>>();
+	private final HashMap<String,List<String>> reactants = new HashMap<String,List<String>>();
+	private final HashMap<String,List<InteractionRegistry.Regulation>> regulations =
+			new HashMap<String,List<InteractionRegistry.Regulation>>();
+
+	/**
+	 * Index the document. Where several part types share a role, parts with that role get the type that
+	 * sorts first.
+	 */
+	public SBOL2UCF(SBOLDocument document, PartTypeRegistry types) {
+		for (Map.Entry<String,URI> entry : new TreeMap<String,URI>(types.getRoles()).entrySet()) {
+			if (!roleTypes.containsKey(entry.getValue())) {
+				roleTypes.put(entry.getValue(), entry.getKey());
+			}
+		}
+		for (ComponentDefinition componentDefinition : document.getComponentDefinitions()) {
+			indexComponentDefinition(componentDefinition);
+		}
+		for (ModuleDefinition moduleDefinition : document.getModuleDefinitions()) {
+			for (Interaction interaction : moduleDefinition.getInteractions()) {
+				indexInteraction(interaction);
+			}
+		}
+		Collections.sort(parts, BY_DISPLAY_ID);
+		Collections.sort(gates, BY_DISPLAY_ID);
+		Collections.sort(sensors, BY_DISPLAY_ID);
+		Collections.sort(reporters, BY_DISPLAY_ID);
+	}
+
+	private void indexComponentDefinition(ComponentDefinition componentDefinition) {
+		if (!componentDefinition.containsType(ComponentDefinition.DNA_REGION)) {
+			return;
+		}
+		Map<String,Annotation> cello = celloAnnotations(componentDefinition);
+		Annotation gateType = cello.get("gateType");
+		if (cello.containsKey("family")) {
+			annotations.put(componentDefinition.getIdentity(), cello);
+			gates.add(componentDefinition);
+		} else if (gateType != null && INPUT_SENSOR.equals(gateType.getStringValue())) {
+			sensors.add(componentDefinition);
+		} else if (gateType != null && OUTPUT_REPORTER.equals(gateType.getStringValue())) {
+			reporters.add(componentDefinition);
+		} else {
+			for (URI role : componentDefinition.getRoles()) {
+				String type = roleTypes.get(role);
+				if (type != null) {
+					partTypes.put(componentDefinition.getDisplayId(), type);
+					parts.add(componentDefinition);
+					break;
+				}
+			}
+		}
+	}
+
+	private void indexInteraction(Interaction interaction) {
+		if (interaction.containsType(SystemsBiologyOntology.GENETIC_PRODUCTION)) {
+			List<String> templates = participants(interaction, SystemsBiologyOntology.TEMPLATE);
+			for (String product : participants(interaction, SystemsBiologyOntology.PRODUCT)) {
+				for (String template : templates) {
+					add(products, template, product);
+				}
+			}
+		} else if (interaction.containsType(SystemsBiologyOntology.NON_COVALENT_BINDING)) {
+			List<String> reactantIds = participants(interaction, SystemsBiologyOntology.REACTANT);
+			for (String complex : participants(interaction, SystemsBiologyOntology.PRODUCT)) {
+				for (String reactant : reactantIds) {
+					add(complexes, reactant, complex);
+					add(reactants, complex, reactant);
+				}
+			}
+		} else if (interaction.containsType(SystemsBiologyOntology.INHIBITION)) {
+			indexRegulation(interaction, InteractionRegistry.REPRESSION,
+					SystemsBiologyOntology.INHIBITOR, SystemsBiologyOntology.INHIBITED);
+		} else if (interaction.containsType(SystemsBiologyOntology.STIMULATION)) {
+			indexRegulation(interaction, InteractionRegistry.ACTIVATION,
+					SystemsBiologyOntology.STIMULATOR, SystemsBiologyOntology.STIMULATED);
+		}
+	}
+
+	private void indexRegulation(Interaction interaction, String type, URI regulatorRole, URI regulatedRole) {
+		Map<String,Annotation> cello = celloAnnotations(interaction);
+		List<String> regulated = participants(interaction, regulatedRole);
+		for (String regulator : participants(interaction, regulatorRole)) {
+			for (String promoter : regulated) {
+				InteractionRegistry.Regulation regulation = new InteractionRegistry.Regulation(type, regulator, promoter);
+				regulation.fill(value(cello, "ymin"), value(cello, "ymax"), value(cello, "alpha"), value(cello, "beta"));
+				add(regulations, regulator, regulation);
+			}
+		}
+	}
+
+	private static <T> void add(HashMap<String,List<T>> index, String key, T value) {
+		List<T> values = index.get(key);
+		if (values == null) {
+			values = new ArrayList<T>(1);
+			index.put(key, values);
+		}
+		values.add(value);
+	}
+
+	private static <T> List<T> get(HashMap<String,List<T>> index, String key) {
+		List<T> values = index.get(key);
+		return values == null ? Collections.<T>emptyList() : values;
+	}
+
+	/**
+	 * @return the display ids of the definitions of the participants with a role
+	 */
+	private static List<String> participants(Interaction interaction, URI role) {
+		List<String> ids = new ArrayList<String>(2);
+		for (Participation participation : interaction.getParticipations()) {
+			if (participation.containsRole(role)) {
+				ComponentDefinition definition = participation.getParticipantDefinition();
+				ids.add(definition != null ? definition.getDisplayId() : participation.getParticipant().getDisplayId());
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * @return the annotations in the cello namespace, by local name and in the order they were made
+	 */
+	private static Map<String,Annotation> celloAnnotations(Identified identified) {
+		Map<String,Annotation> cello = new LinkedHashMap<String,Annotation>();
+		for (Annotation annotation : identified.getAnnotations()) {
+			if (Cello2SBOL.celloNS.equals(annotation.getQName().getNamespaceURI())) {
+				cello.put(annotation.getQName().getLocalPart(), annotation);
+			}
+		}
+		return cello;
+	}
+
+	private static String string(Map<String,Annotation> cello, String name) {
+		Annotation annotation = cello.get(name);
+		return annotation != null && annotation.isStringValue() ? annotation.getStringValue() : null;
+	}
+
+	private static Double value(Map<String,Annotation> cello, String name) {
+		Annotation annotation = cello.get(name);
+		return annotation != null && annotation.isDoubleValue() ? annotation.getDoubleValue() : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONObject record(String collection, ComponentDefinition componentDefinition) {
+		JSONObject record = new JSONObject();
+		record.put("collection", collection);
+		record.put("uri", componentDefinition.getIdentity().toString());
+		return record;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void putIfSet(JSONObject record, String key, Object value) {
+		if (value != null) {
+			record.put(key, value);
+		}
+	}
+
+	/**
+	 * @return the UCF records, by collection and then by name
+	 */
+	@SuppressWarnings("unchecked")
+	public List<JSONObject> getRecords() {
+		List<JSONObject> records = new ArrayList<JSONObject>();
+		for (ComponentDefinition part : parts) {
+			if (part.getSequences().isEmpty()) {
+				continue;
+			}
+			JSONObject record = record("parts", part);
+			record.put("type", partTypes.get(part.getDisplayId()));
+			record.put("name", part.getDisplayId());
+			record.put("dnasequence", part.getSequences().iterator().next().getElements());
+			records.add(record);
+		}
+		for (ComponentDefinition gate : gates) {
+			records.add(gate(gate));
+		}
+		for (ComponentDefinition gate : gates) {
+			records.add(responseFunction(gate));
+		}
+		for (ComponentDefinition gate : gates) {
+			records.add(gateParts(gate));
+		}
+		for (ComponentDefinition sensor : sensors) {
+			records.add(sensor(sensor));
+		}
+		for (ComponentDefinition reporter : reporters) {
+			JSONObject record = record("output_reporters", reporter);
+			record.put("name", reporter.getDisplayId());
+			record.put("parts", devicePartIds(reporter));
+			records.add(record);
+		}
+		return records;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject gate(ComponentDefinition gate) {
+		Map<String,Annotation> cello = annotations.get(gate.getIdentity());
+		JSONObject record = record("gates", gate);
+		record.put("gate_name", gate.getDisplayId());
+		for (Object partId : devicePartIds(gate)) {
+			String type = partTypes.get((String)partId);
+			if ("cds".equals(type) || "grna".equals(type)) {
+				record.put("regulator", partId);
+				break;
+			}
+		}
+		putIfSet(record, "group_name", string(cello, "group_name"));
+		putIfSet(record, "gate_type", string(cello, "gate_type"));
+		putIfSet(record, "system", string(cello, "family"));
+		putIfSet(record, "color_hexcode", string(cello, "color_hexcode"));
+		return record;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject responseFunction(ComponentDefinition gate) {
+		Map<String,Annotation> cello = annotations.get(gate.getIdentity());
+		JSONObject record = record("response_functions", gate);
+		record.put("gate_name", gate.getDisplayId());
+		putIfSet(record, "equation", string(cello, "response_function"));
+		putIfSet(record, "tandem_efficiency_factor", string(cello, "tandem_efficiency_factor"));
+		JSONArray variables = new JSONArray();
+		JSONArray parameters = new JSONArray();
+		for (Map.Entry<String,Annotation> entry : cello.entrySet()) {
+			String name = entry.getKey();
+			if (GATE_ANNOTATIONS.contains(name) || !entry.getValue().isDoubleValue()) {
+				continue;
+			}
+			if (name.endsWith(OFF_THRESHOLD)) {
+				String variableName = name.substring(0, name.length() - OFF_THRESHOLD.length());
+				JSONObject variable = new JSONObject();
+				variable.put("name", variableName);
+				variable.put("off_threshold", entry.getValue().getDoubleValue());
+				putIfSet(variable, "on_threshold", value(cello, variableName + ON_THRESHOLD));
+				variables.add(variable);
+			} else if (!name.endsWith(ON_THRESHOLD)) {
+				JSONObject parameter = new JSONObject();
+				parameter.put("name", name);
+				parameter.put("value", entry.getValue().getDoubleValue());
+				parameters.add(parameter);
+			}
+		}
+		record.put("variables", variables);
+		record.put("parameters", parameters);
+		return record;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject gateParts(ComponentDefinition gate) {
+		JSONObject record = record("gate_parts", gate);
+		record.put("gate_name", gate.getDisplayId());
+		JSONArray partIds = devicePartIds(gate);
+		JSONObject cassette = new JSONObject();
+		String variable = "x";
+		for (String name : annotations.get(gate.getIdentity()).keySet()) {
+			if (name.endsWith(OFF_THRESHOLD)) {
+				variable = name.substring(0, name.length() - OFF_THRESHOLD.length());
+				break;
+			}
+		}
+		cassette.put("maps_to_variable", variable);
+		cassette.put("cassette_parts", partIds);
+		JSONArray cassettes = new JSONArray();
+		cassettes.add(cassette);
+		record.put("expression_cassettes", cassettes);
+		for (Object partId : partIds) {
+			InteractionRegistry.Regulation regulation = regulation((String)partId);
+			if (regulation != null) {
+				record.put("promoter", regulation.getRegulated());
+				break;
+			}
+		}
+		return record;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject sensor(ComponentDefinition sensor) {
+		JSONObject record = record("input_sensors", sensor);
+		record.put("name", sensor.getDisplayId());
+		JSONArray partIds = devicePartIds(sensor);
+		record.put("parts", partIds);
+		for (Object obj : partIds) {
+			String partId = (String)obj;
+			InteractionRegistry.Regulation regulation = regulation(partId);
+			if (regulation == null) {
+				continue;
+			}
+			for (String product : get(products, partId)) {
+				for (String complex : get(complexes, product)) {
+					for (String reactant : get(reactants, complex)) {
+						if (!reactant.equals(product)) {
+							record.put("input_molecule", reactant);
+						}
+					}
+				}
+			}
+			record.put("promoter", regulation.getRegulated());
+			record.put("type", regulation.getType().equals(InteractionRegistry.ACTIVATION) ?
+					"complex_stimulator" : "sequester_inhibitor");
+			JSONArray parameters = new JSONArray();
+			parameter(parameters, "signal_low", regulation.getYmin());
+			parameter(parameters, "signal_high", regulation.getYmax());
+			parameter(parameters, "alpha", regulation.getAlpha());
+			parameter(parameters, "beta", regulation.getBeta());
+			record.put("parameters", parameters);
+			break;
+		}
+		return record;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void parameter(JSONArray parameters, String name, Double value) {
+		if (value != null) {
+			JSONObject parameter = new JSONObject();
+			parameter.put("name", name);
+			parameter.put("value", value);
+			parameters.add(parameter);
+		}
+	}
+
+	/**
+	 * @return the first regulation by a product of a part, or else by a complex a product forms
+	 */
+	private InteractionRegistry.Regulation regulation(String partId) {
+		for (String product : get(products, partId)) {
+			List<InteractionRegistry.Regulation> direct = get(regulations, product);
+			if (!direct.isEmpty()) {
+				return direct.get(0);
+			}
+		}
+		for (String product : get(products, partId)) {
+			for (String complex : get(complexes, product)) {
+				List<InteractionRegistry.Regulation> bound = get(regulations, complex);
+				if (!bound.isEmpty()) {
+					return bound.get(0);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the display ids of the parts of a device, in the order of their sequence annotations
+	 */
+	@SuppressWarnings("unchecked")
+	private static JSONArray devicePartIds(ComponentDefinition device) {
+		TreeMap<Integer,String> ordered = new TreeMap<Integer,String>();
+		for (SequenceAnnotation sequenceAnnotation : device.getSequenceAnnotations()) {
+			if (!sequenceAnnotation.isSetComponent()) {
+				continue;
+			}
+			int start = Integer.MAX_VALUE;
+			for (Location location : sequenceAnnotation.getLocations()) {
+				if (location instanceof Range) {
+					start = Math.min(start, ((Range)location).getStart());
+				}
+			}
+			Component component = sequenceAnnotation.getComponent();
+			ComponentDefinition definition = component.getDefinition();
+			ordered.put(start, definition != null ? definition.getDisplayId() : component.getDisplayId());
+		}
+		JSONArray partIds = new JSONArray();
+		partIds.addAll(ordered.values());
+		return partIds;
+	}
+
+	/**
+	 * Write the records as a UCF file, one record per line.
+	 */
+	public void write(Writer out) throws IOException {
+		out.write("[\n");
+		boolean first = true;
+		for (JSONObject record : getRecords()) {
+			if (!first) {
+				out.write(",\n");
+			}
+			record.writeJSONString(out);
+			first = false;
+		}
+		out.write("\n]\n");
+	}
+
+	/**
+	 * Read the SBOL file that is the only argument and write the UCF file named by --export-ucf, or to
+	 * standard output for -.
+	 *
+	 * @return false if the arguments are wrong
+	 */
+	static boolean run(String[] args, HashMap<String,String> options)
+			throws SBOLValidationException, SBOLConversionException, IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: --export-ucf=<file|-> <SBOL file>");
+			return false;
+		}
+		StageMetrics.Stage stage = Cello2SBOL.metrics.start("read_sbol");
+		SBOLDocument document = SBOLReader.read(args[0]);
+		stage.end();
+		stage = Cello2SBOL.metrics.start("export_ucf");
+		SBOL2UCF exporter = new SBOL2UCF(document, Cello2SBOL.partTypes);
+		String path = options.get("export-ucf");
+		OutputStream stream = OutputSink.STDOUT.equals(path) ? System.out : new FileOutputStream(path);
+		Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+		try {
+			exporter.write(out);
+		} finally {
+			if (stream == System.out) {
+				out.flush();
+			} else {
+				out.close();
+			}
+		}
+		stage.end();
+		return true;
+	}
+}
@@ -0,0 +1,433 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.sbolstandard.core2.AccessType;
+import org.sbolstandard.core2.Activity;
+import org.sbolstandard.core2.Agent;
+import org.sbolstandard.core2.Annotation;
+import org.sbolstandard.core2.Association;
+import org.sbolstandard.core2.Attachment;
+import org.sbolstandard.core2.Component;
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.Cut;
+import org.sbolstandard.core2.DirectionType;
+import org.sbolstandard.core2.FunctionalComponent;
+import org.sbolstandard.core2.GenericLocation;
+import org.sbolstandard.core2.GenericTopLevel;
+import org.sbolstandard.core2.Identified;
+import org.sbolstandard.core2.Implementation;
+import org.sbolstandard.core2.Interaction;
+import org.sbolstandard.core2.Location;
+import org.sbolstandard.core2.MapsTo;
+import org.sbolstandard.core2.Model;
+import org.sbolstandard.core2.Module;
+import org.sbolstandard.core2.ModuleDefinition;
+import org.sbolstandard.core2.OrientationType;
+import org.sbolstandard.core2.Participation;
+import org.sbolstandard.core2.Plan;
+import org.sbolstandard.core2.Range;
+import org.sbolstandard.core2.RefinementType;
+import org.sbolstandard.core2.RestrictionType;
+import org.sbolstandard.core2.RoleIntegrationType;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.Sequence;
+import org.sbolstandard.core2.SequenceAnnotation;
+import org.sbolstandard.core2.SequenceConstraint;
+import org.sbolstandard.core2.TopLevel;
+import org.sbolstandard.core2.Usage;
+
+/**
+ * Walks a document and reports the RDF triples that libSBOLj serializes for it, with the same
+ * predicates and with every literal as a plain string. The triples of an object are reported together,
+ * before those of its children, apart from the contents of nested annotations. Objects are visited in
+ * identity order, so the output is deterministic.
+ */
+public class SBOLTriples {
+
+	public static final String RDF = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+	public static final String SBOL2 = "http://sbols.org/v2#";
+	public static final String PROV = "http://www.w3.org/ns/prov#";
+	public static final String DCTERMS = "http://purl.org/dc/terms/";
+
+	public static final String TYPE = RDF + "type";
+
+	/**
+	 * Receives triples; subjects, predicates and resource objects are absolute URIs.
+	 */
+	public interface Sink {
+		void resource(String subject, String predicate, String object) throws IOException;
+		void literal(String subject, String predicate, String value) throws IOException;
+	}
+
+	private final Sink sink;
+
+	public SBOLTriples(Sink sink) {
+		this.sink = sink;
+	}
+
+	public void write(SBOLDocument document) throws IOException {
+		for (TopLevel topLevel : sorted(document.getTopLevels())) {
+			write(topLevel);
+		}
+	}
+
+	public void write(TopLevel topLevel) throws IOException {
+		if (topLevel instanceof ComponentDefinition) {
+			write((ComponentDefinition)topLevel);
+		} else if (topLevel instanceof Sequence) {
+			Sequence sequence = (Sequence)topLevel;
+			topLevel(sequence, SBOL2 + "Sequence");
+			literal(sequence, SBOL2 + "elements", sequence.getElements());
+			resource(sequence, SBOL2 + "encoding", sequence.getEncoding());
+		} else if (topLevel instanceof ModuleDefinition) {
+			write((ModuleDefinition)topLevel);
+		} else if (topLevel instanceof Model) {
+			Model model = (Model)topLevel;
+			topLevel(model, SBOL2 + "Model");
+			resource(model, SBOL2 + "source", model.getSource());
+			resource(model, SBOL2 + "language", model.getLanguage());
+			resource(model, SBOL2 + "framework", model.getFramework());
+		} else if (topLevel instanceof org.sbolstandard.core2.Collection) {
+			org.sbolstandard.core2.Collection collection = (org.sbolstandard.core2.Collection)topLevel;
+			topLevel(collection, SBOL2 + "Collection");
+			resources(collection, SBOL2 + "member", collection.getMemberURIs());
+		} else if (topLevel instanceof Activity) {
+			write((Activity)topLevel);
+		} else if (topLevel instanceof Agent) {
+			topLevel(topLevel, PROV + "Agent");
+		} else if (topLevel instanceof Plan) {
+			topLevel(topLevel, PROV + "Plan");
+		} else if (topLevel instanceof Attachment) {
+			Attachment attachment = (Attachment)topLevel;
+			topLevel(attachment, SBOL2 + "Attachment");
+			resource(attachment, SBOL2 + "source", attachment.getSource());
+			if (attachment.isSetFormat()) {
+				resource(attachment, SBOL2 + "format", attachment.getFormat());
+			}
+			if (attachment.isSetSize()) {
+				literal(attachment, SBOL2 + "size", attachment.getSize().toString());
+			}
+			if (attachment.isSetHash()) {
+				literal(attachment, SBOL2 + "hash", attachment.getHash());
+			}
+		} else if (topLevel instanceof Implementation) {
+			Implementation implementation = (Implementation)topLevel;
+			topLevel(implementation, SBOL2 + "Implementation");
+			if (implementation.isSetBuilt()) {
+				resource(implementation, SBOL2 + "built", implementation.getBuiltURI());
+			}
+		} else if (topLevel instanceof GenericTopLevel) {
+			QName type = ((GenericTopLevel)topLevel).getRDFType();
+			topLevel(topLevel, type.getNamespaceURI() + type.getLocalPart());
+		} else {
+			throw new IllegalArgumentException("Cannot write " + topLevel.getClass().getSimpleName() + " " + topLevel.getIdentity() + " as triples");
+		}
+	}
+
+	private void write(ComponentDefinition cd) throws IOException {
+		topLevel(cd, SBOL2 + "ComponentDefinition");
+		resources(cd, SBOL2 + "type", cd.getTypes());
+		resources(cd, SBOL2 + "role", cd.getRoles());
+		resources(cd, SBOL2 + "sequence", cd.getSequenceURIs());
+		List<Component> components = sorted(cd.getComponents());
+		List<SequenceAnnotation> annotations = sorted(cd.getSequenceAnnotations());
+		List<SequenceConstraint> constraints = sorted(cd.getSequenceConstraints());
+		children(cd, SBOL2 + "component", components);
+		children(cd, SBOL2 + "sequenceAnnotation", annotations);
+		children(cd, SBOL2 + "sequenceConstraint", constraints);
+		annotations(cd);
+		for (Component component : components) {
+			identified(component, SBOL2 + "Component");
+			resource(component, SBOL2 + "definition", component.getDefinitionURI());
+			resource(component, SBOL2 + "access", access(component.getAccess()));
+			resources(component, SBOL2 + "role", component.getRoles());
+			if (component.isSetRoleIntegration()) {
+				resource(component, SBOL2 + "roleIntegration", roleIntegration(component.getRoleIntegration()));
+			}
+			List<Location> sourceLocations = sorted(component.getSourceLocations());
+			children(component, SBOL2 + "sourceLocation", sourceLocations);
+			List<MapsTo> mapsTos = sorted(component.getMapsTos());
+			children(component, SBOL2 + "mapsTo", mapsTos);
+			annotations(component);
+			locations(sourceLocations);
+			mapsTos(mapsTos);
+		}
+		for (SequenceAnnotation annotation : annotations) {
+			identified(annotation, SBOL2 + "SequenceAnnotation");
+			List<Location> locations = sorted(annotation.getLocations());
+			children(annotation, SBOL2 + "location", locations);
+			if (annotation.isSetComponent()) {
+				resource(annotation, SBOL2 + "component", annotation.getComponentURI());
+			}
+			resources(annotation, SBOL2 + "role", annotation.getRoles());
+			annotations(annotation);
+			locations(locations);
+		}
+		for (SequenceConstraint constraint : constraints) {
+			identified(constraint, SBOL2 + "SequenceConstraint");
+			resource(constraint, SBOL2 + "restriction", restriction(constraint.getRestriction()));
+			resource(constraint, SBOL2 + "subject", constraint.getSubjectURI());
+			resource(constraint, SBOL2 + "object", constraint.getObjectURI());
+			annotations(constraint);
+		}
+	}
+
+	private void write(ModuleDefinition md) throws IOException {
+		topLevel(md, SBOL2 + "ModuleDefinition");
+		resources(md, SBOL2 + "role", md.getRoles());
+		List<Module> modules = sorted(md.getModules());
+		List<Interaction> interactions = sorted(md.getInteractions());
+		List<FunctionalComponent> functionalComponents = sorted(md.getFunctionalComponents());
+		children(md, SBOL2 + "module", modules);
+		children(md, SBOL2 + "interaction", interactions);
+		resources(md, SBOL2 + "model", md.getModelURIs());
+		children(md, SBOL2 + "functionalComponent", functionalComponents);
+		annotations(md);
+		for (Module module : modules) {
+			identified(module, SBOL2 + "Module");
+			resource(module, SBOL2 + "definition", module.getDefinitionURI());
+			List<MapsTo> mapsTos = sorted(module.getMapsTos());
+			children(module, SBOL2 + "mapsTo", mapsTos);
+			annotations(module);
+			mapsTos(mapsTos);
+		}
+		for (Interaction interaction : interactions) {
+			identified(interaction, SBOL2 + "Interaction");
+			resources(interaction, SBOL2 + "type", interaction.getTypes());
+			List<Participation> participations = sorted(interaction.getParticipations());
+			children(interaction, SBOL2 + "participation", participations);
+			annotations(interaction);
+			for (Participation participation : participations) {
+				identified(participation, SBOL2 + "Participation");
+				resources(participation, SBOL2 + "role", participation.getRoles());
+				resource(participation, SBOL2 + "participant", participation.getParticipantURI());
+				annotations(participation);
+			}
+		}
+		for (FunctionalComponent fc : functionalComponents) {
+			identified(fc, SBOL2 + "FunctionalComponent");
+			resource(fc, SBOL2 + "definition", fc.getDefinitionURI());
+			resource(fc, SBOL2 + "access", access(fc.getAccess()));
+			resource(fc, SBOL2 + "direction", direction(fc.getDirection()));
+			List<MapsTo> mapsTos = sorted(fc.getMapsTos());
+			children(fc, SBOL2 + "mapsTo", mapsTos);
+			annotations(fc);
+			mapsTos(mapsTos);
+		}
+	}
+
+	private void write(Activity activity) throws IOException {
+		topLevel(activity, PROV + "Activity");
+		resources(activity, SBOL2 + "type", activity.getTypes());
+		if (activity.isSetStartedAtTime()) {
+			literal(activity, PROV + "startedAtTime", activity.getStartedAtTime().toString());
+		}
+		if (activity.isSetEndedAtTime()) {
+			literal(activity, PROV + "endedAtTime", activity.getEndedAtTime().toString());
+		}
+		List<Association> associations = sorted(activity.getAssociations());
+		List<Usage> usages = sorted(activity.getUsages());
+		children(activity, PROV + "qualifiedAssociation", associations);
+		children(activity, PROV + "qualifiedUsage", usages);
+		resources(activity, PROV + "wasInformedBy", activity.getWasInformedByURIs());
+		annotations(activity);
+		for (Association association : associations) {
+			identified(association, PROV + "Association");
+			resources(association, PROV + "hadRole", association.getRoles());
+			if (association.isSetPlan()) {
+				resource(association, PROV + "hadPlan", association.getPlanURI());
+			}
+			resource(association, PROV + "agent", association.getAgentURI());
+			annotations(association);
+		}
+		for (Usage usage : usages) {
+			identified(usage, PROV + "Usage");
+			resource(usage, PROV + "entity", usage.getEntityURI());
+			resources(usage, PROV + "hadRole", usage.getRoles());
+			annotations(usage);
+		}
+	}
+
+	private void topLevel(TopLevel topLevel, String type) throws IOException {
+		identified(topLevel, type);
+		resources(topLevel, SBOL2 + "attachment", topLevel.getAttachmentURIs());
+		if (!(topLevel instanceof ComponentDefinition || topLevel instanceof ModuleDefinition || topLevel instanceof Activity)) {
+			annotations(topLevel);
+		}
+	}
+
+	/**
+	 * Report the type and the properties every object has. Annotations are reported by the caller once
+	 * the other properties of the object are.
+	 */
+	private void identified(Identified identified, String type) throws IOException {
+		resource(identified, TYPE, type);
+		if (identified.isSetPersistentIdentity()) {
+			resource(identified, SBOL2 + "persistentIdentity", identified.getPersistentIdentity());
+		}
+		if (identified.isSetDisplayId()) {
+			literal(identified, SBOL2 + "displayId", identified.getDisplayId());
+		}
+		if (identified.isSetVersion()) {
+			literal(identified, SBOL2 + "version", identified.getVersion());
+		}
+		resources(identified, PROV + "wasDerivedFrom", identified.getWasDerivedFroms());
+		resources(identified, PROV + "wasGeneratedBy", identified.getWasGeneratedBys());
+		if (identified.isSetName()) {
+			literal(identified, DCTERMS + "title", identified.getName());
+		}
+		if (identified.isSetDescription()) {
+			literal(identified, DCTERMS + "description", identified.getDescription());
+		}
+	}
+
+	private void locations(List<Location> locations) throws IOException {
+		for (Location location : locations) {
+			if (location instanceof Range) {
+				Range range = (Range)location;
+				identified(range, SBOL2 + "Range");
+				literal(range, SBOL2 + "start", Integer.toString(range.getStart()));
+				literal(range, SBOL2 + "end", Integer.toString(range.getEnd()));
+			} else if (location instanceof Cut) {
+				identified(location, SBOL2 + "Cut");
+				literal(location, SBOL2 + "at", Integer.toString(((Cut)location).getAt()));
+			} else if (location instanceof GenericLocation) {
+				identified(location, SBOL2 + "GenericLocation");
+			} else {
+				throw new IllegalArgumentException("Cannot write " + location.getClass().getSimpleName() + " " + location.getIdentity() + " as triples");
+			}
+			if (location.isSetOrientation()) {
+				resource(location, SBOL2 + "orientation", orientation(location.getOrientation()));
+			}
+			if (location.isSetSequence()) {
+				resource(location, SBOL2 + "sequence", location.getSequenceURI());
+			}
+			annotations(location);
+		}
+	}
+
+	private void mapsTos(List<MapsTo> mapsTos) throws IOException {
+		for (MapsTo mapsTo : mapsTos) {
+			identified(mapsTo, SBOL2 + "MapsTo");
+			resource(mapsTo, SBOL2 + "refinement", refinement(mapsTo.getRefinement()));
+			resource(mapsTo, SBOL2 + "local", mapsTo.getLocalURI());
+			resource(mapsTo, SBOL2 + "remote", mapsTo.getRemoteURI());
+			annotations(mapsTo);
+		}
+	}
+
+	private void annotations(Identified identified) throws IOException {
+		annotations(identified.getIdentity().toString(), identified.getAnnotations());
+	}
+
+	private void annotations(String subject, List<Annotation> annotations) throws IOException {
+		for (Annotation annotation : annotations) {
+			String predicate = annotation.getQName().getNamespaceURI() + annotation.getQName().getLocalPart();
+			if (annotation.isNestedAnnotations()) {
+				String nested = annotation.getNestedIdentity().toString();
+				QName type = annotation.getNestedQName();
+				sink.resource(subject, predicate, nested);
+				sink.resource(nested, TYPE, type.getNamespaceURI() + type.getLocalPart());
+				annotations(nested, annotation.getAnnotations());
+			} else if (annotation.isURIValue()) {
+				sink.resource(subject, predicate, annotation.getURIValue().toString());
+			} else if (annotation.isStringValue()) {
+				sink.literal(subject, predicate, annotation.getStringValue());
+			} else if (annotation.isIntegerValue()) {
+				sink.literal(subject, predicate, annotation.getIntegerValue().toString());
+			} else if (annotation.isDoubleValue()) {
+				sink.literal(subject, predicate, annotation.getDoubleValue().toString());
+			} else if (annotation.isBooleanValue()) {
+				sink.literal(subject, predicate, annotation.getBooleanValue().toString());
+			}
+		}
+	}
+
+	private void children(Identified parent, String predicate, List<? extends Identified> children) throws IOException {
+		for (Identified child : children) {
+			sink.resource(parent.getIdentity().toString(), predicate, child.getIdentity().toString());
+		}
+	}
+
+	private void resource(Identified subject, String predicate, URI object) throws IOException {
+		if (object != null) {
+			sink.resource(subject.getIdentity().toString(), predicate, object.toString());
+		}
+	}
+
+	private void resource(Identified subject, String predicate, String object) throws IOException {
+		sink.resource(subject.getIdentity().toString(), predicate, object);
+	}
+
+	private void resources(Identified subject, String predicate, Collection<URI> objects) throws IOException {
+		List<URI> sorted = new ArrayList<URI>(objects);
+		Collections.sort(sorted);
+		for (URI object : sorted) {
+			sink.resource(subject.getIdentity().toString(), predicate, object.toString());
+		}
+	}
+
+	private void literal(Identified subject, String predicate, String value) throws IOException {
+		if (value != null) {
+			sink.literal(subject.getIdentity().toString(), predicate, value);
+		}
+	}
+
+	static String access(AccessType access) {
+		return SBOL2 + (access == AccessType.PUBLIC ? "public" : "private");
+	}
+
+	static String direction(DirectionType direction) {
+		switch (direction) {
+		case IN: return SBOL2 + "in";
+		case OUT: return SBOL2 + "out";
+		case INOUT: return SBOL2 + "inout";
+		default: return SBOL2 + "none";
+		}
+	}
+
+	static String orientation(OrientationType orientation) {
+		return SBOL2 + (orientation == OrientationType.INLINE ? "inline" : "reverseComplement");
+	}
+
+	static String restriction(RestrictionType restriction) {
+		switch (restriction) {
+		case PRECEDES: return SBOL2 + "precedes";
+		case SAME_ORIENTATION_AS: return SBOL2 + "sameOrientationAs";
+		case OPPOSITE_ORIENTATION_AS: return SBOL2 + "oppositeOrientationAs";
+		default: return SBOL2 + "differentFrom";
+		}
+	}
+
+	static String refinement(RefinementType refinement) {
+		switch (refinement) {
+		case VERIFYIDENTICAL: return SBOL2 + "verifyIdentical";
+		case USELOCAL: return SBOL2 + "useLocal";
+		case USEREMOTE: return SBOL2 + "useRemote";
+		default: return SBOL2 + "merge";
+		}
+	}
+
+	static String roleIntegration(RoleIntegrationType roleIntegration) {
+		return SBOL2 + (roleIntegration == RoleIntegrationType.OVERRIDEROLES ? "overrideRoles" : "mergeRoles");
+	}
+
+	private static <T extends Identified> List<T> sorted(Collection<T> objects) {
+		List<T> result = new ArrayList<T>(objects);
+		Collections.sort(result, new Comparator<T>() {
+			public int compare(T a, T b) {
+				return a.getIdentity().compareTo(b.getIdentity());
+			}
+		});
+		return result;
+	}
+}
@@ -0,0 +1,170 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.Sequence;
+
+/**
+ * Holds the sequences of the parts that gates, sensors and reporters are assembled from. Each part
+ * sequence is read from the parts document once, the first time it is used, and kept with two bits per
+ * base, plus one bit per base for the case when a sequence mixes cases. Parts with the same sequence
+ * share one copy. Sequences with bases other than a, c, g and t are kept as they are. The store can be
+ * used from several threads.
+ */
+public class SequenceStore {
+
+	private static final char[] LOWER = { 'a', 'c', 'g', 't' };
+	private static final char[] UPPER = { 'A', 'C', 'G', 'T' };
+
+	private static final class Packed {
+		final int length;
+		final long[] bases;
+		// null when every base is upper case, or lower case as given by upper
+		final long[] lowerCase;
+		final boolean upper;
+		// Only for sequences that cannot be packed
+		final String raw;
+		final int hash;
+
+		Packed(int length, long[] bases, long[] lowerCase, boolean upper, String raw) {
+			this.length = length;
+			this.bases = bases;
+			this.lowerCase = lowerCase;
+			this.upper = upper;
+			this.raw = raw;
+			this.hash = raw != null ? raw.hashCode()
+					: (31 * Arrays.hashCode(bases) + Arrays.hashCode(lowerCase)) * 31 + (upper ? 1 : 0) + length;
+		}
+
+		void decode(char[] chars, int offset) {
+			if (raw != null) {
+				raw.getChars(0, length, chars, offset);
+				return;
+			}
+			for (int i = 0; i < length; i++) {
+				int base = (int)(bases[i >> 5] >>> ((i & 31) << 1)) & 3;
+				boolean lower = lowerCase != null ? (lowerCase[i >> 6] & (1L << i)) != 0 : !upper;
+				chars[offset + i] = lower ? LOWER[base] : UPPER[base];
+			}
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Packed)) {
+				return false;
+			}
+			Packed other = (Packed)o;
+			return length == other.length && upper == other.upper
+					&& (raw != null ? raw.equals(other.raw) : other.raw == null
+							&& Arrays.equals(bases, other.bases) && Arrays.equals(lowerCase, other.lowerCase));
+		}
+	}
+
+	private final SBOLDocument partsDocument;
+	private final ConcurrentHashMap<String,Packed> parts = new ConcurrentHashMap<String,Packed>();
+	private final HashMap<Packed,Packed> interned = new HashMap<Packed,Packed>();
+
+	/**
+	 * @param partsDocument where the sequence of a part is read the first time the part is used
+	 */
+	public SequenceStore(SBOLDocument partsDocument) {
+		this.partsDocument = partsDocument;
+	}
+
+	/**
+	 * @return the number of bases in the sequence of a part
+	 */
+	public int length(String partId) {
+		return get(partId).length;
+	}
+
+	/**
+	 * @return the sequence of a part
+	 */
+	public String getElements(String partId) {
+		Packed packed = get(partId);
+		char[] chars = new char[packed.length];
+		packed.decode(chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * @return the sequences of the parts joined in order
+	 */
+	public String assemble(List<String> partIds) {
+		int length = 0;
+		for (String partId : partIds) {
+			length += get(partId).length;
+		}
+		char[] chars = new char[length];
+		int offset = 0;
+		for (String partId : partIds) {
+			Packed packed = get(partId);
+			packed.decode(chars, offset);
+			offset += packed.length;
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * @return the number of distinct sequences held
+	 */
+	public synchronized int size() {
+		return interned.size();
+	}
+
+	private Packed get(String partId) {
+		Packed packed = parts.get(partId);
+		if (packed == null) {
+			Sequence sequence = partsDocument.getSequence(partId + "_sequence", Cello2SBOL.version);
+			if (sequence == null) {
+				throw new IllegalArgumentException("No sequence for part " + partId);
+			}
+			packed = intern(pack(sequence.getElements()));
+			parts.put(partId, packed);
+		}
+		return packed;
+	}
+
+	private synchronized Packed intern(Packed packed) {
+		Packed existing = interned.get(packed);
+		if (existing != null) {
+			return existing;
+		}
+		interned.put(packed, packed);
+		return packed;
+	}
+
+	static Packed pack(String elements) {
+		int length = elements.length();
+		long[] bases = new long[(length + 31) >> 5];
+		long[] lowerCase = new long[(length + 63) >> 6];
+		int lower = 0;
+		for (int i = 0; i < length; i++) {
+			int base;
+			switch (elements.charAt(i)) {
+			case 'a': lower++; lowerCase[i >> 6] |= 1L << i; base = 0; break;
+			case 'c': lower++; lowerCase[i >> 6] |= 1L << i; base = 1; break;
+			case 'g': lower++; lowerCase[i >> 6] |= 1L << i; base = 2; break;
+			case 't': lower++; lowerCase[i >> 6] |= 1L << i; base = 3; break;
+			case 'A': base = 0; break;
+			case 'C': base = 1; break;
+			case 'G': base = 2; break;
+			case 'T': base = 3; break;
+			default: return new Packed(length, null, null, false, elements);
+			}
+			bases[i >> 5] |= (long)base << ((i & 31) << 1);
+		}
+		if (lower == 0 || lower == length) {
+			return new Packed(length, bases, null, lower == 0, null);
+		}
+		return new Packed(length, bases, lowerCase, false, null);
+	}
+}
@@ -0,0 +1,685 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.xml.namespace.QName;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.sbolstandard.core2.AccessType;
+import org.sbolstandard.core2.Activity;
+import org.sbolstandard.core2.Agent;
+import org.sbolstandard.core2.Annotation;
+import org.sbolstandard.core2.Association;
+import org.sbolstandard.core2.Component;
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.DirectionType;
+import org.sbolstandard.core2.FunctionalComponent;
+import org.sbolstandard.core2.Identified;
+import org.sbolstandard.core2.Interaction;
+import org.sbolstandard.core2.Location;
+import org.sbolstandard.core2.ModuleDefinition;
+import org.sbolstandard.core2.OrientationType;
+import org.sbolstandard.core2.Participation;
+import org.sbolstandard.core2.Range;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.Sequence;
+import org.sbolstandard.core2.SequenceAnnotation;
+import org.sbolstandard.core2.Usage;
+
+/**
+ * Binary snapshots of converted documents, keyed by the SHA-256 of the UCF file and of the part type
+ * roles and provenance mode it is converted with, and the converter version. A snapshot holds exactly
+ * what the converter creates: Agents, Activities, Sequences, ComponentDefinitions and ModuleDefinitions
+ * with their annotations. Strings are written once and then referred to by index, since the same URIs
+ * and namespaces recur on nearly every object.
+ * <p>
+ * Documents holding anything else, such as Attachments or sequence constraints, are not stored.
+ */
+public class SnapshotCache {
+
+	/**
+	 * Bump whenever the conversion output or the snapshot layout changes, so stale snapshots are ignored.
+	 */
+	static final int VERSION = 4;
+
+	private static final int MAGIC = 0x55434653;
+
+	private final File directory;
+
+	public SnapshotCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return the SHA-256 of the UCF file, the part type roles and the provenance mode, followed by the
+	 *         converter version
+	 */
+	public static String key(String pathToUCFFile) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		InputStream in = new DigestInputStream(new FileInputStream(pathToUCFFile), digest);
+		try {
+			byte[] buffer = new byte[65536];
+			while (in.read(buffer) >= 0) {
+			}
+		} finally {
+			in.close();
+		}
+		// --part-types can change the role of any part
+		for (Map.Entry<String,URI> role : new TreeMap<String,URI>(Cello2SBOL.partTypes.getRoles()).entrySet()) {
+			digest.update((role.getKey() + "=" + role.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		digest.update(("provenance=" + (Cello2SBOL.slimProvenance ? Provenance.SLIM : Provenance.FULL) + "\n")
+				.getBytes(StandardCharsets.UTF_8));
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex + "-v" + VERSION;
+	}
+
+	/**
+	 * @return the cached document for the UCF file, or null if there is no snapshot for it
+	 */
+	public SBOLDocument load(String pathToUCFFile) throws IOException, SBOLValidationException {
+		String key = key(pathToUCFFile);
+		File file = new File(directory, key + ".snapshot");
+		if (!file.exists()) {
+			return null;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a snapshot: " + file);
+			}
+			Reader reader = new Reader(in);
+			if (!key.equals(reader.string())) {
+				return null;
+			}
+			SBOLDocument document = reader.document();
+			Activity activity = document.getActivity("CelloUCF2sbol_Activity", Cello2SBOL.version);
+			if (activity != null) {
+				Cello2SBOL.activityURI = activity.getIdentity();
+			}
+			return document;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Store a snapshot of the document for the UCF file.
+	 *
+	 * @return false if the document holds something a snapshot cannot represent
+	 */
+	public boolean store(String pathToUCFFile, SBOLDocument document) throws IOException {
+		if (!supported(document)) {
+			return false;
+		}
+		String key = key(pathToUCFFile);
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+		File temp = File.createTempFile(key, ".tmp", directory);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			Writer writer = new Writer(out);
+			writer.string(key);
+			writer.document(document);
+		} finally {
+			out.close();
+		}
+		File file = new File(directory, key + ".snapshot");
+		if (!temp.renameTo(file)) {
+			file.delete();
+			if (!temp.renameTo(file)) {
+				temp.delete();
+				throw new IOException("Unable to write snapshot " + file);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the document in snapshot form, or null if a snapshot cannot represent it
+	 */
+	static byte[] toBytes(SBOLDocument document) throws IOException {
+		if (!supported(document)) {
+			return null;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		new Writer(out).document(document);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	static SBOLDocument fromBytes(byte[] bytes) throws IOException, SBOLValidationException {
+		return new Reader(new DataInputStream(new ByteArrayInputStream(bytes))).document();
+	}
+
+	/**
+	 * @return true if the snapshot writes everything the document holds, which ParallelValidator relies on
+	 *         to validate copies of it
+	 */
+	static boolean supported(SBOLDocument document) {
+		if (document.getTopLevels().size() != document.getAgents().size() + document.getActivities().size()
+				+ document.getSequences().size() + document.getComponentDefinitions().size()
+				+ document.getModuleDefinitions().size()) {
+			return false;
+		}
+		for (Agent agent : document.getAgents()) {
+			if (!flat(agent)) {
+				return false;
+			}
+		}
+		for (Activity activity : document.getActivities()) {
+			if (!flat(activity) || !activity.getTypes().isEmpty() || activity.isSetStartedAtTime()
+					|| !activity.getWasInformedByURIs().isEmpty()) {
+				return false;
+			}
+			for (Association association : activity.getAssociations()) {
+				if (!plain(association) || !association.getRoles().isEmpty() || association.isSetPlan()) {
+					return false;
+				}
+			}
+			for (Usage usage : activity.getUsages()) {
+				if (!plain(usage) || !usage.getRoles().isEmpty()) {
+					return false;
+				}
+			}
+		}
+		for (Sequence sequence : document.getSequences()) {
+			if (!flat(sequence)) {
+				return false;
+			}
+		}
+		for (ComponentDefinition cd : document.getComponentDefinitions()) {
+			if (!flat(cd) || !cd.getSequenceConstraints().isEmpty()) {
+				return false;
+			}
+			for (Component component : cd.getComponents()) {
+				if (!plain(component) || !component.getMeasures().isEmpty() || !component.getRoles().isEmpty()
+						|| component.isSetRoleIntegration() || !component.getMapsTos().isEmpty()
+						|| !component.getLocations().isEmpty() || !component.getSourceLocations().isEmpty()) {
+					return false;
+				}
+			}
+			for (SequenceAnnotation sa : cd.getSequenceAnnotations()) {
+				if (!plain(sa) || !sa.getRoles().isEmpty()) {
+					return false;
+				}
+				for (Location location : sa.getLocations()) {
+					if (!(location instanceof Range) || !plain(location)) {
+						return false;
+					}
+				}
+			}
+		}
+		for (ModuleDefinition md : document.getModuleDefinitions()) {
+			if (!flat(md) || !md.getModules().isEmpty() || !md.getModels().isEmpty()) {
+				return false;
+			}
+			for (FunctionalComponent fc : md.getFunctionalComponents()) {
+				if (!plain(fc) || !fc.getMeasures().isEmpty() || !fc.getMapsTos().isEmpty()) {
+					return false;
+				}
+			}
+			for (Interaction interaction : md.getInteractions()) {
+				// The annotations of an interaction are written, unlike those of other child objects
+				if (described(interaction) || !flat(interaction) || !interaction.getMeasures().isEmpty()) {
+					return false;
+				}
+				for (Participation participation : interaction.getParticipations()) {
+					if (!plain(participation) || !participation.getMeasures().isEmpty()) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return false if the object has nested annotations, which snapshots cannot hold
+	 */
+	private static boolean flat(Identified identified) {
+		for (Annotation annotation : identified.getAnnotations()) {
+			if (annotation.isNestedAnnotations()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean described(Identified child) {
+		return child.getName() != null || child.getDescription() != null || !child.getWasDerivedFroms().isEmpty()
+				|| !child.getWasGeneratedBys().isEmpty();
+	}
+
+	/**
+	 * @return true if a child object has nothing the snapshot does not write: only the display id and the
+	 *         fields of its own class are written for it
+	 */
+	private static boolean plain(Identified child) {
+		return !described(child) && child.getAnnotations().isEmpty();
+	}
+
+	private static <T extends Identified> List<T> sorted(Collection<T> objects) {
+		List<T> result = new ArrayList<T>(objects);
+		Collections.sort(result, new Comparator<T>() {
+			public int compare(T a, T b) {
+				return a.getIdentity().compareTo(b.getIdentity());
+			}
+		});
+		return result;
+	}
+
+	private static class Writer {
+
+		private final DataOutputStream out;
+		private final HashMap<String,Integer> strings = new HashMap<String,Integer>();
+
+		Writer(DataOutputStream out) {
+			this.out = out;
+		}
+
+		void document(SBOLDocument document) throws IOException {
+			out.writeInt(document.getAgents().size());
+			for (Agent agent : sorted(document.getAgents())) {
+				identified(agent);
+			}
+			out.writeInt(document.getActivities().size());
+			for (Activity activity : sorted(document.getActivities())) {
+				identified(activity);
+				DateTime ended = activity.getEndedAtTime();
+				out.writeBoolean(ended != null);
+				if (ended != null) {
+					out.writeLong(ended.getMillis());
+					string(ended.getZone().getID());
+				}
+				out.writeInt(activity.getAssociations().size());
+				for (Association association : sorted(activity.getAssociations())) {
+					string(association.getDisplayId());
+					uri(association.getAgentURI());
+				}
+				out.writeInt(activity.getUsages().size());
+				for (Usage usage : sorted(activity.getUsages())) {
+					string(usage.getDisplayId());
+					uri(usage.getEntityURI());
+				}
+			}
+			out.writeInt(document.getSequences().size());
+			for (Sequence sequence : sorted(document.getSequences())) {
+				identified(sequence);
+				string(sequence.getElements());
+				uri(sequence.getEncoding());
+			}
+			out.writeInt(document.getComponentDefinitions().size());
+			for (ComponentDefinition cd : sorted(document.getComponentDefinitions())) {
+				identified(cd);
+				uris(cd.getTypes());
+				uris(cd.getRoles());
+				uris(cd.getSequenceURIs());
+				out.writeInt(cd.getComponents().size());
+				for (Component component : sorted(cd.getComponents())) {
+					string(component.getDisplayId());
+					string(component.getAccess().name());
+					uri(component.getDefinitionURI());
+				}
+				out.writeInt(cd.getSequenceAnnotations().size());
+				for (SequenceAnnotation sa : sorted(cd.getSequenceAnnotations())) {
+					string(sa.getDisplayId());
+					string(sa.getComponent() == null ? null : sa.getComponent().getDisplayId());
+					out.writeInt(sa.getLocations().size());
+					for (Location location : sorted(sa.getLocations())) {
+						Range range = (Range)location;
+						string(range.getDisplayId());
+						out.writeInt(range.getStart());
+						out.writeInt(range.getEnd());
+						string(range.getOrientation() == null ? null : range.getOrientation().name());
+					}
+				}
+			}
+			out.writeInt(document.getModuleDefinitions().size());
+			for (ModuleDefinition md : sorted(document.getModuleDefinitions())) {
+				identified(md);
+				uris(md.getRoles());
+				out.writeInt(md.getFunctionalComponents().size());
+				for (FunctionalComponent fc : sorted(md.getFunctionalComponents())) {
+					string(fc.getDisplayId());
+					string(fc.getAccess().name());
+					uri(fc.getDefinitionURI());
+					string(fc.getDirection().name());
+				}
+				out.writeInt(md.getInteractions().size());
+				for (Interaction interaction : sorted(md.getInteractions())) {
+					string(interaction.getDisplayId());
+					uris(interaction.getTypes());
+					annotations(interaction);
+					out.writeInt(interaction.getParticipations().size());
+					for (Participation participation : sorted(interaction.getParticipations())) {
+						string(participation.getDisplayId());
+						string(participation.getParticipant().getDisplayId());
+						uris(participation.getRoles());
+					}
+				}
+			}
+		}
+
+		private void identified(Identified identified) throws IOException {
+			string(identified.getDisplayId());
+			string(identified.getVersion());
+			string(identified.getName());
+			string(identified.getDescription());
+			uris(identified.getWasGeneratedBys());
+			uris(identified.getWasDerivedFroms());
+			annotations(identified);
+		}
+
+		private void annotations(Identified identified) throws IOException {
+			out.writeInt(identified.getAnnotations().size());
+			for (Annotation annotation : identified.getAnnotations()) {
+				QName qName = annotation.getQName();
+				string(qName.getNamespaceURI());
+				string(qName.getLocalPart());
+				string(qName.getPrefix());
+				if (annotation.isStringValue()) {
+					out.writeByte('s');
+					string(annotation.getStringValue());
+				} else if (annotation.isDoubleValue()) {
+					out.writeByte('d');
+					out.writeDouble(annotation.getDoubleValue());
+				} else if (annotation.isIntegerValue()) {
+					out.writeByte('i');
+					out.writeInt(annotation.getIntegerValue());
+				} else if (annotation.isBooleanValue()) {
+					out.writeByte('b');
+					out.writeBoolean(annotation.getBooleanValue());
+				} else if (annotation.isURIValue()) {
+					out.writeByte('u');
+					uri(annotation.getURIValue());
+				} else {
+					throw new IOException("Nested annotations are not supported in snapshots: " + identified.getIdentity());
+				}
+			}
+		}
+
+		private void uris(Set<URI> uris) throws IOException {
+			List<URI> sorted = new ArrayList<URI>(uris);
+			Collections.sort(sorted);
+			out.writeInt(sorted.size());
+			for (URI uri : sorted) {
+				uri(uri);
+			}
+		}
+
+		private void uri(URI uri) throws IOException {
+			string(uri == null ? null : uri.toString());
+		}
+
+		/**
+		 * A string is written in full the first time and as its index afterwards; -1 is null.
+		 */
+		void string(String string) throws IOException {
+			if (string == null) {
+				out.writeInt(-1);
+				return;
+			}
+			Integer index = strings.get(string);
+			if (index != null) {
+				out.writeInt(index);
+				return;
+			}
+			strings.put(string, strings.size());
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(-2);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static class Reader {
+
+		private final DataInputStream in;
+		private final List<String> strings = new ArrayList<String>();
+
+		Reader(DataInputStream in) {
+			this.in = in;
+		}
+
+		SBOLDocument document() throws IOException, SBOLValidationException {
+			SBOLDocument document = new SBOLDocument();
+			document.setDefaultURIprefix(Cello2SBOL.uriPrefix);
+			// References are resolved once every top-level is read
+			document.setComplete(false);
+			document.setCreateDefaults(false);
+
+			for (int i = in.readInt(); i > 0; i--) {
+				String displayId = string();
+				String version = string();
+				identified(document.createAgent(displayId, version));
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				String displayId = string();
+				String version = string();
+				Activity activity = document.createActivity(displayId, version);
+				identified(activity);
+				if (in.readBoolean()) {
+					long millis = in.readLong();
+					activity.setEndedAtTime(new DateTime(millis, DateTimeZone.forID(string())));
+				}
+				for (int j = in.readInt(); j > 0; j--) {
+					activity.createAssociation(string(), uri());
+				}
+				for (int j = in.readInt(); j > 0; j--) {
+					activity.createUsage(string(), uri());
+				}
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				String displayId = string();
+				String version = string();
+				String name = string();
+				String description = string();
+				Set<URI> wasGeneratedBys = uris();
+				Set<URI> wasDerivedFroms = uris();
+				List<Annotation> annotations = annotations();
+				Sequence sequence = document.createSequence(displayId, version, string(), uri());
+				identified(sequence, name, description, wasGeneratedBys, wasDerivedFroms, annotations);
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				String displayId = string();
+				String version = string();
+				String name = string();
+				String description = string();
+				Set<URI> wasGeneratedBys = uris();
+				Set<URI> wasDerivedFroms = uris();
+				List<Annotation> annotations = annotations();
+				ComponentDefinition cd = document.createComponentDefinition(displayId, version, uris());
+				identified(cd, name, description, wasGeneratedBys, wasDerivedFroms, annotations);
+				for (URI role : uris()) {
+					cd.addRole(role);
+				}
+				for (URI sequence : uris()) {
+					cd.addSequence(sequence);
+				}
+				for (int j = in.readInt(); j > 0; j--) {
+					String componentId = string();
+					AccessType access = AccessType.valueOf(string());
+					cd.createComponent(componentId, access, uri());
+				}
+				for (int j = in.readInt(); j > 0; j--) {
+					String annotationId = string();
+					String componentId = string();
+					SequenceAnnotation sa = null;
+					for (int k = in.readInt(); k > 0; k--) {
+						String rangeId = string();
+						int start = in.readInt();
+						int end = in.readInt();
+						String orientation = string();
+						OrientationType orientationType = orientation == null ? null : OrientationType.valueOf(orientation);
+						if (sa == null) {
+							sa = orientationType == null ? cd.createSequenceAnnotation(annotationId, rangeId, start, end)
+									: cd.createSequenceAnnotation(annotationId, rangeId, start, end, orientationType);
+						} else if (orientationType == null) {
+							sa.addRange(rangeId, start, end);
+						} else {
+							sa.addRange(rangeId, start, end, orientationType);
+						}
+					}
+					if (componentId != null) {
+						sa.setComponent(componentId);
+					}
+				}
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				String displayId = string();
+				String version = string();
+				ModuleDefinition md = document.createModuleDefinition(displayId, version);
+				identified(md);
+				for (URI role : uris()) {
+					md.addRole(role);
+				}
+				for (int j = in.readInt(); j > 0; j--) {
+					String componentId = string();
+					AccessType access = AccessType.valueOf(string());
+					URI definition = uri();
+					md.createFunctionalComponent(componentId, access, definition, DirectionType.valueOf(string()));
+				}
+				for (int j = in.readInt(); j > 0; j--) {
+					String interactionId = string();
+					Interaction interaction = md.createInteraction(interactionId, uris());
+					for (Annotation annotation : annotations()) {
+						add(interaction, annotation);
+					}
+					for (int k = in.readInt(); k > 0; k--) {
+						String participationId = string();
+						String participant = string();
+						interaction.createParticipation(participationId, participant, uris());
+					}
+				}
+			}
+			document.setComplete(true);
+			document.setCreateDefaults(true);
+			return document;
+		}
+
+		private void identified(Identified identified) throws IOException, SBOLValidationException {
+			identified(identified, string(), string(), uris(), uris(), annotations());
+		}
+
+		private void identified(Identified identified, String name, String description, Set<URI> wasGeneratedBys,
+				Set<URI> wasDerivedFroms, List<Annotation> annotations) throws SBOLValidationException {
+			if (name != null) {
+				identified.setName(name);
+			}
+			if (description != null) {
+				identified.setDescription(description);
+			}
+			identified.setWasGeneratedBys(wasGeneratedBys);
+			identified.setWasDerivedFroms(wasDerivedFroms);
+			for (Annotation annotation : annotations) {
+				add(identified, annotation);
+			}
+		}
+
+		private static void add(Identified identified, Annotation annotation) throws SBOLValidationException {
+			if (annotation.isStringValue()) {
+				identified.createAnnotation(annotation.getQName(), annotation.getStringValue());
+			} else if (annotation.isDoubleValue()) {
+				identified.createAnnotation(annotation.getQName(), annotation.getDoubleValue());
+			} else if (annotation.isIntegerValue()) {
+				identified.createAnnotation(annotation.getQName(), annotation.getIntegerValue());
+			} else if (annotation.isBooleanValue()) {
+				identified.createAnnotation(annotation.getQName(), annotation.getBooleanValue());
+			} else {
+				identified.createAnnotation(annotation.getQName(), annotation.getURIValue());
+			}
+		}
+
+		private List<Annotation> annotations() throws IOException, SBOLValidationException {
+			List<Annotation> annotations = new ArrayList<Annotation>();
+			for (int i = in.readInt(); i > 0; i--) {
+				QName qName = new QName(string(), string(), string());
+				switch (in.readByte()) {
+				case 's':
+					annotations.add(new Annotation(qName, string()));
+					break;
+				case 'd':
+					annotations.add(new Annotation(qName, in.readDouble()));
+					break;
+				case 'i':
+					annotations.add(new Annotation(qName, in.readInt()));
+					break;
+				case 'b':
+					annotations.add(new Annotation(qName, in.readBoolean()));
+					break;
+				default:
+					annotations.add(new Annotation(qName, uri()));
+					break;
+				}
+			}
+			return annotations;
+		}
+
+		private Set<URI> uris() throws IOException {
+			Set<URI> uris = new HashSet<URI>();
+			for (int i = in.readInt(); i > 0; i--) {
+				uris.add(uri());
+			}
+			return uris;
+		}
+
+		private URI uri() throws IOException {
+			String uri = string();
+			return uri == null ? null : URI.create(uri);
+		}
+
+		String string() throws IOException {
+			int index = in.readInt();
+			if (index == -1) {
+				return null;
+			}
+			if (index >= 0) {
+				return strings.get(index);
+			}
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			String string = new String(bytes, StandardCharsets.UTF_8);
+			strings.add(string);
+			return string;
+		}
+	}
+}
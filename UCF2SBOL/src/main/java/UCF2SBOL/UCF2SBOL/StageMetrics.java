@@ -0,0 +1,183 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+
+/**
+ * Wall time, CPU time and allocated bytes of the stages of a run, and counts of what the run produced.
+ * CPU time and allocation are those of the thread that runs a stage, so stages of files converted at
+ * the same time in batch mode are measured separately; work a stage hands to a pool of workers, such as
+ * --parallel conversion or attachment uploads, only shows in its wall time. A stage that runs more than
+ * once is summed. The report is written as JSON, and optionally in the Prometheus text format that the
+ * node exporter's textfile collector reads.
+ */
+public class StageMetrics {
+
+	static final String PROMETHEUS_PREFIX = "ucf2sbol_";
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	public class Stage {
+		private final String name;
+		private final long wall;
+		private final long cpu;
+		private final long allocated;
+
+		private Stage(String name) {
+			this.name = name;
+			this.wall = System.nanoTime();
+			this.cpu = cpuTime();
+			this.allocated = allocatedBytes();
+		}
+
+		public void end() {
+			add(name, System.nanoTime() - wall, cpuTime() - cpu, allocatedBytes() - allocated);
+		}
+	}
+
+	private static class Totals {
+		long runs;
+		long wallNanos;
+		long cpuNanos;
+		long allocatedBytes;
+	}
+
+	private final LinkedHashMap<String,Totals> stages = new LinkedHashMap<String,Totals>();
+	private final LinkedHashMap<String,Long> counters = new LinkedHashMap<String,Long>();
+
+	public Stage start(String name) {
+		return new Stage(name);
+	}
+
+	public synchronized void count(String counter, long delta) {
+		Long value = counters.get(counter);
+		counters.put(counter, (value == null ? 0 : value) + delta);
+	}
+
+	private synchronized void add(String name, long wallNanos, long cpuNanos, long allocatedBytes) {
+		Totals totals = stages.get(name);
+		if (totals == null) {
+			totals = new Totals();
+			stages.put(name, totals);
+		}
+		totals.runs++;
+		totals.wallNanos += wallNanos;
+		totals.cpuNanos += cpuNanos;
+		totals.allocatedBytes += allocatedBytes;
+	}
+
+	private static long cpuTime() {
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+	}
+
+	private static long allocatedBytes() {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean)threads;
+			if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+				return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the stages and counters as a JSON object
+	 */
+	public synchronized String toJSON() {
+		LinkedHashMap<String,Object> stageReport = new LinkedHashMap<String,Object>();
+		for (Map.Entry<String,Totals> entry : stages.entrySet()) {
+			Totals totals = entry.getValue();
+			LinkedHashMap<String,Object> stage = new LinkedHashMap<String,Object>();
+			stage.put("runs", totals.runs);
+			stage.put("wall_seconds", totals.wallNanos / 1e9);
+			stage.put("cpu_seconds", totals.cpuNanos / 1e9);
+			stage.put("allocated_bytes", totals.allocatedBytes);
+			stageReport.put(entry.getKey(), stage);
+		}
+		LinkedHashMap<String,Object> report = new LinkedHashMap<String,Object>();
+		report.put("stages", stageReport);
+		report.put("counters", new LinkedHashMap<String,Long>(counters));
+		return JSONValue.toJSONString(report);
+	}
+
+	/**
+	 * @return the stages and counters in the Prometheus text exposition format
+	 */
+	public synchronized String toPrometheus() {
+		StringBuilder text = new StringBuilder();
+		gauge(text, "stage_runs", "Number of times each stage ran.");
+		for (Map.Entry<String,Totals> entry : stages.entrySet()) {
+			sample(text, "stage_runs", entry.getKey(), entry.getValue().runs);
+		}
+		gauge(text, "stage_wall_seconds", "Wall time spent in each stage.");
+		for (Map.Entry<String,Totals> entry : stages.entrySet()) {
+			sample(text, "stage_wall_seconds", entry.getKey(), entry.getValue().wallNanos / 1e9);
+		}
+		gauge(text, "stage_cpu_seconds", "CPU time of the thread that ran each stage.");
+		for (Map.Entry<String,Totals> entry : stages.entrySet()) {
+			sample(text, "stage_cpu_seconds", entry.getKey(), entry.getValue().cpuNanos / 1e9);
+		}
+		gauge(text, "stage_allocated_bytes", "Bytes allocated by the thread that ran each stage.");
+		for (Map.Entry<String,Totals> entry : stages.entrySet()) {
+			sample(text, "stage_allocated_bytes", entry.getKey(), entry.getValue().allocatedBytes);
+		}
+		for (Map.Entry<String,Long> entry : counters.entrySet()) {
+			gauge(text, entry.getKey(), "Number of " + entry.getKey().replace('_', ' ') + " in the run.");
+			text.append(PROMETHEUS_PREFIX).append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+		}
+		return text.toString();
+	}
+
+	private static void gauge(StringBuilder text, String name, String help) {
+		text.append("# HELP ").append(PROMETHEUS_PREFIX).append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(PROMETHEUS_PREFIX).append(name).append(" gauge\n");
+	}
+
+	private static void sample(StringBuilder text, String name, String stage, Object value) {
+		text.append(PROMETHEUS_PREFIX).append(name).append("{stage=\"").append(stage).append("\"} ")
+			.append(value).append('\n');
+	}
+
+	/**
+	 * Write the JSON report and the Prometheus text file, each only if its path is not null. Files are
+	 * replaced in one step so that a collector never reads half a report.
+	 */
+	public void write(String jsonPath, String prometheusPath) throws IOException {
+		if (jsonPath != null) {
+			replace(new File(jsonPath), toJSON() + "\n");
+		}
+		if (prometheusPath != null) {
+			replace(new File(prometheusPath), toPrometheus());
+		}
+	}
+
+	private static void replace(File file, String content) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		parent.mkdirs();
+		File temp = File.createTempFile(file.getName(), ".tmp", parent);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8));
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+		if (!temp.renameTo(file)) {
+			file.delete();
+			if (!temp.renameTo(file)) {
+				temp.delete();
+				throw new IOException("Unable to write " + file);
+			}
+		}
+	}
+}
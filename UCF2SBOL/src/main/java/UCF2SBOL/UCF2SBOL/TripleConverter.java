@@ -0,0 +1,466 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+import org.sbolstandard.core2.AccessType;
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.DirectionType;
+import org.sbolstandard.core2.OrientationType;
+import org.sbolstandard.core2.Sequence;
+import org.sbolstandard.core2.SequenceOntology;
+import org.sbolstandard.core2.SystemsBiologyOntology;
+
+/**
+ * Converts a UCF file straight to the triples of the document that {@link Cello2SBOL#convert} builds,
+ * without building the document. The file is indexed and its records are parsed one at a time as they
+ * are converted, so memory holds the record being converted, the record offsets and the interactions
+ * that an {@link InteractionRegistry} collects to report at the end. The triples are not validated, and
+ * the triples of one object are reported together but in a different order than {@link SBOLTriples}
+ * reports them. Provenance is reported as {@link Provenance} records it.
+ */
+public class TripleConverter {
+
+	private static final String SBOL2 = SBOLTriples.SBOL2;
+	private static final String PROV = SBOLTriples.PROV;
+	private static final String CREATED = Cello2SBOL.dcTermsNS + "created";
+	private static final URI GRNA = URI.create(Cello2SBOL.so + "SO:0001264");
+
+	private final SBOLTriples.Sink sink;
+	private final String createdDate;
+	private final boolean slim;
+	private String activity;
+	private UCFIndex index;
+	private InteractionRegistry interactions;
+
+	/**
+	 * @param createdDate the dcTerms:created date of every converted object, or of the Activity when slim
+	 * @param slim whether to report provenance as {@link Provenance#SLIM} mode records it
+	 */
+	public TripleConverter(SBOLTriples.Sink sink, String createdDate, boolean slim) {
+		this.sink = sink;
+		this.createdDate = createdDate;
+		this.slim = slim;
+	}
+
+	/**
+	 * Report the triples of the conversion Activity and Agent and of the parts, gates, sensors and
+	 * reporters of a UCF file.
+	 */
+	public void convert(String pathToUCFFile, DateTime endedAtTime) throws IOException, ParseException {
+		activity(endedAtTime);
+		index = new UCFIndex(pathToUCFFile);
+		interactions = new InteractionRegistry();
+		try {
+			HashMap<String,UCFIndex.Entry> gates = byGateName("gates");
+			HashMap<String,UCFIndex.Entry> responses = byGateName("response_functions");
+			// Fail on unknown part types before anything is written, keeping only the offending records
+			List<JSONObject> unknown = new ArrayList<JSONObject>();
+			for (UCFIndex.Entry entry : index.getEntries("parts")) {
+				JSONObject part = index.parse(entry);
+				if (!Cello2SBOL.partTypes.contains((String)part.get("type"))) {
+					unknown.add(part);
+				}
+			}
+			Cello2SBOL.partTypes.check(unknown);
+			for (UCFIndex.Entry entry : index.getEntries("parts")) {
+				// Like the parts map of the document path, the last part with a name wins
+				if (index.getEntryByName("parts", entry.getName()) == entry) {
+					part(index.parse(entry));
+				}
+			}
+			for (UCFIndex.Entry entry : index.getEntries("gate_parts")) {
+				String gateName = entry.getGateName();
+				gate(index.parse(entry), record(gates.get(gateName), "gates", gateName),
+						record(responses.get(gateName), "response_functions", gateName));
+			}
+			for (UCFIndex.Entry entry : index.getEntries("input_sensors")) {
+				sensor(index.parse(entry));
+			}
+			for (UCFIndex.Entry entry : index.getEntries("output_reporters")) {
+				reporter(index.parse(entry));
+			}
+			for (String id : interactions.getSmallMolecules()) {
+				componentDefinition(id, ComponentDefinition.SMALL_MOLECULE, null, null);
+			}
+			for (String[] reactants : interactions.getComplexes()) {
+				complex(reactants[0], reactants[1]);
+			}
+			for (InteractionRegistry.Regulation regulation : interactions.getRegulations()) {
+				if (regulation.getType().equals(InteractionRegistry.REPRESSION)) {
+					inhibition(regulation.getRegulator(), regulation.getRegulated(),
+							regulation.getYmin(), regulation.getYmax(), regulation.getAlpha(), regulation.getBeta());
+				} else {
+					activation(regulation.getRegulator(), regulation.getRegulated(),
+							regulation.getYmin(), regulation.getYmax(), regulation.getAlpha(), regulation.getBeta());
+				}
+			}
+		} finally {
+			index.close();
+			index = null;
+			interactions = null;
+		}
+	}
+
+	private HashMap<String,UCFIndex.Entry> byGateName(String collection) {
+		HashMap<String,UCFIndex.Entry> entries = new HashMap<String,UCFIndex.Entry>();
+		for (UCFIndex.Entry entry : index.getEntries(collection)) {
+			entries.put(entry.getGateName(), entry);
+		}
+		return entries;
+	}
+
+	private JSONObject record(UCFIndex.Entry entry, String collection, String name) throws IOException, ParseException {
+		if (entry == null) {
+			throw new IOException("UCF file has no " + collection + " record for " + name);
+		}
+		return index.parse(entry);
+	}
+
+	private void activity(DateTime endedAtTime) throws IOException {
+		String persistent = Cello2SBOL.uriPrefix + Cello2SBOL.activityId;
+		activity = identified(persistent, Cello2SBOL.activityId, PROV + "Activity");
+		sink.literal(activity, SBOLTriples.DCTERMS + "title", Cello2SBOL.activityName);
+		sink.literal(activity, SBOLTriples.DCTERMS + "description", Cello2SBOL.activityDescription);
+		sink.literal(activity, PROV + "endedAtTime", endedAtTime.toString());
+		if (slim) {
+			sink.literal(activity, CREATED, createdDate);
+		}
+		String association = child(persistent, PROV + "qualifiedAssociation", "association", PROV + "Association");
+		sink.resource(association, PROV + "agent", identity(Cello2SBOL.uriPrefix + Cello2SBOL.agentId));
+		String agent = identified(Cello2SBOL.uriPrefix + Cello2SBOL.agentId, Cello2SBOL.agentId, PROV + "Agent");
+		sink.literal(agent, SBOLTriples.DCTERMS + "title", Cello2SBOL.agentName);
+		sink.literal(agent, SBOLTriples.DCTERMS + "description", Cello2SBOL.agentDescription);
+		sink.resource(agent, Cello2SBOL.dcNS + "source", Cello2SBOL.agentSource);
+		for (String creator : Cello2SBOL.agentCreators) {
+			sink.literal(agent, Cello2SBOL.dcNS + "creator", creator);
+		}
+	}
+
+	private void part(JSONObject part) throws IOException {
+		String name = ((String)part.get("name")).replace("-", "_");
+		sequence(name + "_sequence", (String)part.get("dnasequence"));
+		String partType = (String)part.get("type");
+		String cd = componentDefinition(name, ComponentDefinition.DNA_REGION, Cello2SBOL.getRole(partType), name);
+		sink.resource(cd, SBOL2 + "sequence", identity(Cello2SBOL.uriPrefix + name + "_sequence"));
+		if (partType.equals("cds")) {
+			protein(name);
+		}
+		if (partType.equals("grna")) {
+			rna(name);
+		}
+	}
+
+	private void protein(String cdsId) throws IOException {
+		componentDefinition(cdsId + "_protein", ComponentDefinition.PROTEIN, null, cdsId + "_protein");
+
+		String md = moduleDefinition(cdsId + "_protein_production", true);
+		functionalComponent(md, cdsId, cdsId);
+		functionalComponent(md, cdsId + "_protein", cdsId + "_protein");
+		String interaction = interaction(md, cdsId + "_protein_interaction", SystemsBiologyOntology.GENETIC_PRODUCTION);
+		participation(md, interaction, cdsId, cdsId, SystemsBiologyOntology.TEMPLATE);
+		participation(md, interaction, cdsId + "_protein", cdsId + "_protein", SystemsBiologyOntology.PRODUCT);
+
+		md = moduleDefinition(cdsId + "_protein_degradation", true);
+		functionalComponent(md, cdsId + "_protein", cdsId + "_protein");
+		interaction = interaction(md, cdsId + "_degradation_interaction", SystemsBiologyOntology.DEGRADATION);
+		participation(md, interaction, cdsId + "_protein", cdsId + "_protein", SystemsBiologyOntology.REACTANT);
+	}
+
+	private void rna(String rnaId) throws IOException {
+		componentDefinition(rnaId + "_rna", ComponentDefinition.RNA_MOLECULE, URI.create(Cello2SBOL.so + "SO:0001998"), rnaId + "_rna");
+
+		String md = moduleDefinition(rnaId + "_rna_production", true);
+		functionalComponent(md, rnaId, rnaId);
+		functionalComponent(md, rnaId + "_protein", rnaId + "_rna");
+		String interaction = interaction(md, rnaId + "_rna_interaction", SystemsBiologyOntology.GENETIC_PRODUCTION);
+		participation(md, interaction, rnaId, rnaId, SystemsBiologyOntology.TEMPLATE);
+		participation(md, interaction, rnaId + "_rna", rnaId + "_rna", SystemsBiologyOntology.PRODUCT);
+
+		md = moduleDefinition(rnaId + "_rna_degradation", true);
+		functionalComponent(md, rnaId + "_rna", rnaId + "_rna");
+		interaction = interaction(md, rnaId + "_degradation_interaction", SystemsBiologyOntology.DEGRADATION);
+		participation(md, interaction, rnaId + "_rna", rnaId + "_rna", SystemsBiologyOntology.REACTANT);
+	}
+
+	private void regulation(String regulator, String regulated, String suffix, URI type,
+			String regulatorParticipation, URI regulatorRole, URI regulatedRole,
+			Double ymin, Double ymax, Double alpha, Double beta) throws IOException {
+		String id = regulator + "_" + regulated + "_" + suffix;
+		String md = moduleDefinition(id, false);
+		functionalComponent(md, regulator, regulator);
+		functionalComponent(md, regulated, regulated);
+		String interaction = interaction(md, id, type);
+		participation(md, interaction, regulatorParticipation, regulator, regulatorRole);
+		participation(md, interaction, regulated + "_promoter_participation", regulated, regulatedRole);
+		String identity = identity(interaction);
+		cello(identity, "ymin", ymin);
+		cello(identity, "ymax", ymax);
+		cello(identity, "alpha", alpha);
+		cello(identity, "beta", beta);
+	}
+
+	private void inhibition(String inhibitor, String inhibited, Double ymin, Double ymax, Double alpha, Double beta) throws IOException {
+		regulation(inhibitor, inhibited, "repression", SystemsBiologyOntology.INHIBITION, inhibitor + "_participation",
+				SystemsBiologyOntology.INHIBITOR, SystemsBiologyOntology.INHIBITED, ymin, ymax, alpha, beta);
+	}
+
+	private void activation(String activator, String promoter, Double ymin, Double ymax, Double alpha, Double beta) throws IOException {
+		regulation(activator, promoter, "activation", SystemsBiologyOntology.STIMULATION, activator + "_protein_participation",
+				SystemsBiologyOntology.STIMULATOR, SystemsBiologyOntology.STIMULATED, ymin, ymax, alpha, beta);
+	}
+
+	private void complex(String reactant1, String reactant2) throws IOException {
+		String complex = reactant1 + "_" + reactant2;
+		componentDefinition(complex, ComponentDefinition.COMPLEX, null, complex);
+
+		String md = moduleDefinition(complex + "_complex_formation", false);
+		functionalComponent(md, reactant1, reactant1);
+		functionalComponent(md, reactant2, reactant2);
+		functionalComponent(md, complex, complex);
+		String interaction = interaction(md, complex + "_complex_formation", SystemsBiologyOntology.NON_COVALENT_BINDING);
+		participation(md, interaction, reactant1, reactant1, SystemsBiologyOntology.REACTANT);
+		participation(md, interaction, reactant2, reactant2, SystemsBiologyOntology.REACTANT);
+		participation(md, interaction, complex, complex, SystemsBiologyOntology.PRODUCT);
+
+		md = moduleDefinition(complex + "_degradation", true);
+		functionalComponent(md, complex, complex);
+		interaction = interaction(md, complex + "_degradation_interaction", SystemsBiologyOntology.DEGRADATION);
+		participation(md, interaction, complex, complex, SystemsBiologyOntology.REACTANT);
+	}
+
+	private void gate(JSONObject gate, JSONObject gateRecord, JSONObject response) throws IOException, ParseException {
+		String gate_name = (String)gate.get("gate_name");
+		String cd = componentDefinition(gate_name, ComponentDefinition.DNA_REGION, SequenceOntology.ENGINEERED_REGION, gate_name);
+		cello(cd, "family", (String)gateRecord.get("system"));
+		cello(cd, "gate_type", (String)gateRecord.get("gate_type"));
+		cello(cd, "group_name", (String)gateRecord.get("group_name"));
+		cello(cd, "color_hexcode", (String)gateRecord.get("color_hexcode"));
+		cello(cd, "response_function", (String)response.get("equation"));
+		if (response.get("tandem_efficiency_factor") != null) {
+			cello(cd, "tandem_efficiency_factor", (String)response.get("tandem_efficiency_factor"));
+		}
+		for (Object obj : (JSONArray)response.get("parameters")) {
+			cello(cd, (String)((JSONObject)obj).get("name"), (Double)((JSONObject)obj).get("value"));
+		}
+		for (Object obj : (JSONArray)response.get("variables")) {
+			String name = (String)((JSONObject)obj).get("name");
+			cello(cd, name + "_off_threshold", (Double)((JSONObject)obj).get("off_threshold"));
+			cello(cd, name + "_on_threshold", (Double)((JSONObject)obj).get("on_threshold"));
+		}
+
+		String promoter = (String)gate.get("promoter");
+		StringBuilder seq = new StringBuilder();
+		for (Object obj : (JSONArray)gate.get("expression_cassettes")) {
+			// Annotations are numbered from zero and located from one in each cassette
+			int start = 1;
+			int annotationCount = 0;
+			for (Object obj2 : (JSONArray)((JSONObject)obj).get("cassette_parts")) {
+				String partId = (String)obj2;
+				JSONObject part = record(index.getEntryByName("parts", partId), "parts", partId);
+				String cass_seq = (String)part.get("dnasequence");
+				seq.append(cass_seq);
+				subComponent(cd, partId, annotationCount, start, cass_seq.length());
+				start += cass_seq.length();
+				annotationCount++;
+				URI role = Cello2SBOL.getRole((String)part.get("type"));
+				if (SequenceOntology.CDS.equals(role)) {
+					interactions.repression(partId + "_protein", promoter, null, null, null, null);
+				}
+				if (GRNA.equals(role)) {
+					interactions.complex(partId + "_rna", "dCAS9_Mxi1_protein");
+					interactions.repression(partId + "_rna_dCAS9_Mxi1_protein", promoter, null, null, null, null);
+				}
+			}
+		}
+		cdSequence(cd, gate_name, seq.toString());
+	}
+
+	private void sensor(JSONObject sensor) throws IOException, ParseException {
+		String sensor_name = (String)sensor.get("name");
+		String cd = componentDefinition(sensor_name, ComponentDefinition.DNA_REGION, SequenceOntology.ENGINEERED_REGION, sensor_name);
+		cello(cd, "gateType", "input_sensor");
+
+		String promoter = (String)sensor.get("promoter");
+		String input_molecule = (String)sensor.get("input_molecule");
+		Double signal_low = (Double)sensor.get("signal_low");
+		Double signal_high = (Double)sensor.get("signal_high");
+		Double alpha = null;
+		Double beta = null;
+		JSONArray parameters = (JSONArray)sensor.get("parameters");
+		if (parameters == null) {
+			// Some UCF files only have the top-level signal values
+			parameters = new JSONArray();
+		}
+		for (Object obj : parameters) {
+			String name = (String)((JSONObject)obj).get("name");
+			if (name.equals("signal_low")) {
+				signal_low = (Double)((JSONObject)obj).get("value");
+			} else if (name.equals("signal_high")) {
+				signal_high = (Double)((JSONObject)obj).get("value");
+			} else if (name.equals("alpha")) {
+				alpha = (Double)((JSONObject)obj).get("value");
+			} else if (name.equals("beta")) {
+				beta = (Double)((JSONObject)obj).get("value");
+			}
+		}
+
+		StringBuilder seq = new StringBuilder();
+		int start = 1;
+		int annotationCount = 0;
+		for (Object obj2 : (JSONArray)sensor.get("parts")) {
+			String partId = (String)obj2;
+			JSONObject part = record(index.getEntryByName("parts", partId), "parts", partId);
+			String cass_seq = (String)part.get("dnasequence");
+			seq.append(cass_seq);
+			subComponent(cd, partId, annotationCount, start, cass_seq.length());
+			start += cass_seq.length();
+			annotationCount++;
+			if (SequenceOntology.CDS.equals(Cello2SBOL.getRole((String)part.get("type")))) {
+				interactions.smallMolecule(input_molecule);
+				interactions.complex(input_molecule, partId + "_protein");
+				if (((String)sensor.get("type")).equals("complex_stimulator")) {
+					interactions.activation(input_molecule + "_" + partId + "_protein", promoter, signal_low, signal_high, alpha, beta);
+				} else if (((String)sensor.get("type")).equals("sequester_inhibitor")) {
+					interactions.repression(partId + "_protein", promoter, signal_low, signal_high, alpha, beta);
+				}
+			}
+		}
+		cdSequence(cd, sensor_name, seq.toString());
+	}
+
+	private void reporter(JSONObject reporter) throws IOException, ParseException {
+		String reporter_name = (String)reporter.get("name");
+		String cd = componentDefinition(reporter_name, ComponentDefinition.DNA_REGION, SequenceOntology.ENGINEERED_REGION, reporter_name);
+		cello(cd, "gateType", "output_reporter");
+
+		StringBuilder seq = new StringBuilder();
+		int start = 1;
+		int annotationCount = 0;
+		for (Object obj2 : (JSONArray)reporter.get("parts")) {
+			String partId = (String)obj2;
+			String cass_seq = (String)record(index.getEntryByName("parts", partId), "parts", partId).get("dnasequence");
+			seq.append(cass_seq);
+			subComponent(cd, partId, annotationCount, start, cass_seq.length());
+			start += cass_seq.length();
+			annotationCount++;
+		}
+		cdSequence(cd, reporter_name, seq.toString());
+	}
+
+	/**
+	 * Report a component of a part and the annotation that locates it, as the gates, sensors and
+	 * reporters of the document path create them.
+	 */
+	private void subComponent(String cd, String partId, int annotationCount, int start, int length) throws IOException {
+		String persistent = persistent(cd);
+		String component = child(persistent, SBOL2 + "component", partId, SBOL2 + "Component");
+		sink.resource(component, SBOL2 + "definition", identity(Cello2SBOL.uriPrefix + partId));
+		sink.resource(component, SBOL2 + "access", SBOLTriples.access(AccessType.PUBLIC));
+		String annotationId = "annotation" + annotationCount;
+		String annotation = child(persistent, SBOL2 + "sequenceAnnotation", annotationId, SBOL2 + "SequenceAnnotation");
+		sink.resource(annotation, SBOL2 + "component", component);
+		String range = child(persistent + "/" + annotationId, SBOL2 + "location", "range", SBOL2 + "Range");
+		sink.literal(range, SBOL2 + "start", Integer.toString(start));
+		sink.literal(range, SBOL2 + "end", Integer.toString(start + length - 1));
+		sink.resource(range, SBOL2 + "orientation", SBOLTriples.orientation(OrientationType.INLINE));
+	}
+
+	private void cdSequence(String cd, String displayId, String elements) throws IOException {
+		sink.resource(cd, SBOL2 + "sequence", sequence(displayId + "_sequence", elements));
+	}
+
+	private String sequence(String displayId, String elements) throws IOException {
+		String sequence = topLevel(displayId, SBOL2 + "Sequence", displayId);
+		sink.literal(sequence, SBOL2 + "elements", elements);
+		sink.resource(sequence, SBOL2 + "encoding", Sequence.IUPAC_DNA.toString());
+		return sequence;
+	}
+
+	private String componentDefinition(String displayId, URI type, URI role, String name) throws IOException {
+		String cd = topLevel(displayId, SBOL2 + "ComponentDefinition", name);
+		sink.resource(cd, SBOL2 + "type", type.toString());
+		if (role != null) {
+			sink.resource(cd, SBOL2 + "role", role.toString());
+		}
+		return cd;
+	}
+
+	/**
+	 * @return the persistent identity of the module definition, which names its children
+	 */
+	private String moduleDefinition(String displayId, boolean named) throws IOException {
+		topLevel(displayId, SBOL2 + "ModuleDefinition", named ? displayId : null);
+		return Cello2SBOL.uriPrefix + displayId;
+	}
+
+	private void functionalComponent(String md, String displayId, String definition) throws IOException {
+		String fc = child(md, SBOL2 + "functionalComponent", displayId, SBOL2 + "FunctionalComponent");
+		sink.resource(fc, SBOL2 + "definition", identity(Cello2SBOL.uriPrefix + definition));
+		sink.resource(fc, SBOL2 + "access", SBOLTriples.access(AccessType.PUBLIC));
+		sink.resource(fc, SBOL2 + "direction", SBOLTriples.direction(DirectionType.NONE));
+	}
+
+	/**
+	 * @return the persistent identity of the interaction
+	 */
+	private String interaction(String md, String displayId, URI type) throws IOException {
+		String interaction = child(md, SBOL2 + "interaction", displayId, SBOL2 + "Interaction");
+		sink.resource(interaction, SBOL2 + "type", type.toString());
+		return md + "/" + displayId;
+	}
+
+	private void participation(String md, String interaction, String displayId, String participant, URI role) throws IOException {
+		String participation = child(interaction, SBOL2 + "participation", displayId, SBOL2 + "Participation");
+		sink.resource(participation, SBOL2 + "role", role.toString());
+		sink.resource(participation, SBOL2 + "participant", identity(md + "/" + participant));
+	}
+
+	private String topLevel(String displayId, String type, String name) throws IOException {
+		String identity = identified(Cello2SBOL.uriPrefix + displayId, displayId, type);
+		sink.resource(identity, PROV + "wasGeneratedBy", activity);
+		if (name != null) {
+			sink.literal(identity, SBOLTriples.DCTERMS + "title", name);
+		}
+		if (!slim) {
+			sink.literal(identity, CREATED, createdDate);
+		}
+		return identity;
+	}
+
+	private String child(String parent, String predicate, String displayId, String type) throws IOException {
+		String persistent = parent + "/" + displayId;
+		sink.resource(identity(parent), predicate, identity(persistent));
+		return identified(persistent, displayId, type);
+	}
+
+	private String identified(String persistent, String displayId, String type) throws IOException {
+		String identity = identity(persistent);
+		sink.resource(identity, SBOLTriples.TYPE, type);
+		sink.resource(identity, SBOL2 + "persistentIdentity", persistent);
+		sink.literal(identity, SBOL2 + "displayId", displayId);
+		sink.literal(identity, SBOL2 + "version", Cello2SBOL.version);
+		return identity;
+	}
+
+	private void cello(String subject, String name, Object value) throws IOException {
+		if (value != null) {
+			sink.literal(subject, Cello2SBOL.celloNS + name, value.toString());
+		}
+	}
+
+	private static String identity(String persistent) {
+		return persistent + "/" + Cello2SBOL.version;
+	}
+
+	private static String persistent(String identity) {
+		return identity.substring(0, identity.length() - Cello2SBOL.version.length() - 1);
+	}
+}
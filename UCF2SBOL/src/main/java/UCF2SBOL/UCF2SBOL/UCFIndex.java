@@ -0,0 +1,308 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Byte-offset index of the top-level records of a UCF file. The file is scanned once through a
+ * read-only memory mapping and each record is located by its "collection", "gate_name" and "name"
+ * fields, so that records can later be copied out with {@link FileChannel#transferTo} without being
+ * parsed, or parsed one at a time.
+ */
+public class UCFIndex implements Closeable {
+
+	private static final long WINDOW = 1L << 28;
+	private static final byte[] OPEN = { '[' };
+	private static final byte[] COMMA = { ',' };
+	private static final byte[] CLOSE = { ']' };
+
+	public static class Entry {
+		private final String collection;
+		private final String gateName;
+		private final String name;
+		private final long start;
+		private final long end;
+
+		Entry(String collection, String gateName, String name, long start, long end) {
+			this.collection = collection;
+			this.gateName = gateName;
+			this.name = name;
+			this.start = start;
+			this.end = end;
+		}
+
+		public String getCollection() {
+			return collection;
+		}
+
+		public String getGateName() {
+			return gateName;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		public long getLength() {
+			return end - start;
+		}
+	}
+
+	private final FileInputStream stream;
+	private final FileChannel channel;
+	private final List<Entry> entries = new ArrayList<Entry>();
+	private final HashMap<String,List<Entry>> collections = new HashMap<String,List<Entry>>();
+	private final HashMap<String,Entry> names = new HashMap<String,Entry>();
+
+	public UCFIndex(String pathToUCFFile) throws IOException {
+		stream = new FileInputStream(pathToUCFFile);
+		channel = stream.getChannel();
+		scan();
+	}
+
+	/**
+	 * @return every top-level record in file order
+	 */
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * @return the records of the given collection in file order
+	 */
+	public List<Entry> getEntries(String collection) {
+		List<Entry> result = collections.get(collection);
+		if (result == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * @return the record of the given collection for the given gate, or null if there is none
+	 */
+	public Entry getEntry(String collection, String gateName) {
+		for (Entry entry : getEntries(collection)) {
+			if (gateName.equals(entry.getGateName())) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the last record of the given collection with the given name, or null if there is none
+	 */
+	public Entry getEntryByName(String collection, String name) {
+		return names.get(collection + "\u0000" + name);
+	}
+
+	/**
+	 * Parse one record.
+	 */
+	public JSONObject parse(Entry entry) throws IOException, ParseException {
+		ByteBuffer buffer = ByteBuffer.allocate((int)entry.getLength());
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, entry.getStart() + buffer.position()) < 0) {
+				throw new IOException("Record at " + entry.getStart() + " extends past the end of the file");
+			}
+		}
+		return (JSONObject)new JSONParser().parse(new String(buffer.array(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Copy the raw bytes of one record to the target channel.
+	 */
+	public long transferTo(Entry entry, WritableByteChannel target) throws IOException {
+		long position = entry.getStart();
+		long remaining = entry.getLength();
+		while (remaining > 0) {
+			long count = channel.transferTo(position, remaining, target);
+			position += count;
+			remaining -= count;
+		}
+		return entry.getLength();
+	}
+
+	/**
+	 * Copy several records to the target channel as a JSON array.
+	 */
+	public long transferTo(List<Entry> records, WritableByteChannel target) throws IOException {
+		long total = write(OPEN, target);
+		for (int i = 0; i < records.size(); i++) {
+			if (i > 0) {
+				total += write(COMMA, target);
+			}
+			total += transferTo(records.get(i), target);
+		}
+		total += write(CLOSE, target);
+		return total;
+	}
+
+	/**
+	 * Write one record to a file.
+	 */
+	public void extract(Entry entry, File file) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			transferTo(entry, out.getChannel());
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write several records to a file as a JSON array.
+	 */
+	public void extract(List<Entry> records, File file) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			transferTo(records, out.getChannel());
+		} finally {
+			out.close();
+		}
+	}
+
+	public void close() throws IOException {
+		channel.close();
+		stream.close();
+	}
+
+	private static long write(byte[] bytes, WritableByteChannel target) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			target.write(buffer);
+		}
+		return bytes.length;
+	}
+
+	private void scan() throws IOException {
+		long size = channel.size();
+		int depth = 0;
+		boolean inString = false;
+		boolean escape = false;
+		boolean expectKey = false;
+		boolean capture = false;
+		boolean isKey = false;
+		String key = null;
+		String collection = null;
+		String gateName = null;
+		String name = null;
+		long start = 0;
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+
+		for (long offset = 0; offset < size; offset += WINDOW) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, size - offset));
+			while (buffer.hasRemaining()) {
+				long position = offset + buffer.position();
+				byte b = buffer.get();
+				if (inString) {
+					if (escape) {
+						escape = false;
+						if (capture) {
+							text.write('\\');
+							text.write(b);
+						}
+					} else if (b == '\\') {
+						escape = true;
+					} else if (b == '"') {
+						inString = false;
+						if (capture) {
+							String value = new String(text.toByteArray(), StandardCharsets.UTF_8);
+							if (value.indexOf('\\') >= 0) {
+								// Decode escapes as the parser does, so names match the ids of parsed records
+								value = (String)JSONValue.parse('"' + value + '"');
+							}
+							if (isKey) {
+								key = value;
+							} else if (key.equals("collection")) {
+								collection = value;
+							} else if (key.equals("gate_name")) {
+								gateName = value;
+							} else {
+								name = value;
+							}
+						}
+					} else if (capture) {
+						text.write(b);
+					}
+					continue;
+				}
+				switch (b) {
+				case '"':
+					inString = true;
+					isKey = depth == 2 && expectKey;
+					capture = isKey || (depth == 2 && key != null
+							&& (key.equals("collection") || key.equals("gate_name") || key.equals("name")));
+					text.reset();
+					break;
+				case ':':
+					if (depth == 2) expectKey = false;
+					break;
+				case ',':
+					if (depth == 2) {
+						expectKey = true;
+						key = null;
+					}
+					break;
+				case '{':
+				case '[':
+					depth++;
+					if (depth == 2) {
+						start = position;
+						expectKey = true;
+						key = null;
+						collection = null;
+						gateName = null;
+						name = null;
+					}
+					break;
+				case '}':
+				case ']':
+					depth--;
+					if (depth == 1) {
+						add(new Entry(collection, gateName, name, start, position + 1));
+					}
+					break;
+				default:
+					break;
+				}
+			}
+		}
+	}
+
+	private void add(Entry entry) {
+		entries.add(entry);
+		List<Entry> list = collections.get(entry.getCollection());
+		if (list == null) {
+			list = new ArrayList<Entry>();
+			collections.put(entry.getCollection(), list);
+		}
+		list.add(entry);
+		if (entry.getName() != null) {
+			names.put(entry.getCollection() + "\u0000" + entry.getName(), entry);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.Set;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Pull reader over the top-level array of a UCF file. Each call to {@link #next()} resumes the
+ * parser until one more record has been read, so only a single record is ever held in memory.
+ * Records whose "collection" is not in the requested set are consumed without building a tree.
+ */
+public class UCFReader implements ContentHandler, Closeable {
+
+	private final Reader in;
+	private final Set<String> collections;
+	private final JSONParser parser = new JSONParser();
+
+	private final LinkedList<Object> stack = new LinkedList<Object>();
+	private final LinkedList<String> keys = new LinkedList<String>();
+	private int depth = 0;
+	private boolean skipping = false;
+	private boolean finished = false;
+	private JSONObject record = null;
+
+	/**
+	 * @param in reader positioned at the start of a UCF file
+	 * @param collections collections to materialize, or null to materialize every record
+	 */
+	public UCFReader(Reader in, Set<String> collections) {
+		this.in = in;
+		this.collections = collections;
+	}
+
+	public UCFReader(String pathToUCFFile, Set<String> collections) throws IOException {
+		this(new BufferedReader(new InputStreamReader(new FileInputStream(pathToUCFFile),
+				StandardCharsets.UTF_8)), collections);
+	}
+
+	/**
+	 * @return the next record from one of the requested collections, or null at the end of the file
+	 */
+	public JSONObject next() throws IOException, ParseException {
+		record = null;
+		while (record == null && !finished) {
+			parser.parse(in, this, true);
+		}
+		return record;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	public void startJSON() {
+	}
+
+	public void endJSON() {
+		finished = true;
+	}
+
+	public boolean startArray() {
+		depth++;
+		if (depth > 2 && !skipping) {
+			stack.push(new JSONArray());
+		}
+		return true;
+	}
+
+	public boolean endArray() {
+		depth--;
+		if (depth > 1 && !skipping) {
+			addValue(stack.pop());
+		}
+		return true;
+	}
+
+	public boolean startObject() {
+		depth++;
+		if (depth == 2) {
+			skipping = false;
+			stack.clear();
+			keys.clear();
+			stack.push(new JSONObject());
+		} else if (!skipping) {
+			stack.push(new JSONObject());
+		}
+		return true;
+	}
+
+	public boolean endObject() {
+		depth--;
+		if (depth == 1) {
+			if (skipping) {
+				skipping = false;
+				return true;
+			}
+			JSONObject ucf = (JSONObject)stack.pop();
+			if (collections != null && !collections.contains(ucf.get("collection"))) {
+				return true;
+			}
+			// Pause the parser so that next() can hand this record back
+			record = ucf;
+			return false;
+		}
+		if (!skipping) {
+			addValue(stack.pop());
+		}
+		return true;
+	}
+
+	public boolean startObjectEntry(String key) {
+		if (!skipping) {
+			keys.push(key);
+		}
+		return true;
+	}
+
+	public boolean endObjectEntry() {
+		if (!skipping) {
+			keys.pop();
+		}
+		return true;
+	}
+
+	public boolean primitive(Object value) {
+		if (skipping) {
+			return true;
+		}
+		if (depth == 2 && keys.peek().equals("collection") && collections != null
+				&& !collections.contains(value)) {
+			skipping = true;
+			stack.clear();
+			keys.clear();
+			return true;
+		}
+		addValue(value);
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addValue(Object value) {
+		Object parent = stack.peek();
+		if (parent instanceof JSONObject) {
+			((JSONObject)parent).put(keys.peek(), value);
+		} else {
+			((JSONArray)parent).add(value);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Errors of one validation run, gathered from one or more shards. An error reported by several shards,
+ * because a referenced top-level was copied into each of them, is kept once.
+ */
+public class ValidationResult {
+
+	private final LinkedHashSet<String> errors = new LinkedHashSet<String>();
+	private int shards = 0;
+	private long millis = 0;
+
+	synchronized void addShard(List<String> shardErrors) {
+		errors.addAll(shardErrors);
+		shards++;
+	}
+
+	void setMillis(long millis) {
+		this.millis = millis;
+	}
+
+	public synchronized List<String> getErrors() {
+		return Collections.unmodifiableList(new ArrayList<String>(errors));
+	}
+
+	public synchronized int getNumErrors() {
+		return errors.size();
+	}
+
+	public synchronized boolean isValid() {
+		return errors.isEmpty();
+	}
+
+	/**
+	 * @return the number of shards that were validated, 0 if validation was skipped
+	 */
+	public synchronized int getShards() {
+		return shards;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+}
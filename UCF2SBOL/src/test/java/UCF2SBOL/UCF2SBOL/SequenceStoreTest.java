@@ -0,0 +1,76 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.Sequence;
+
+/**
+ * Checks that packed part sequences decode to the sequences they were read from.
+ */
+public class SequenceStoreTest
+    extends TestCase
+{
+    private static final String MIXED = "acgtACGTaaccGGTTtgcaTGCAacgtacgtacgtacgtacgtacgtacgtacgtacgtACGTacgtACGTacgt";
+
+    private SBOLDocument document;
+
+    public SequenceStoreTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( SequenceStoreTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        document = Cello2SBOL.createDocument( false );
+        addPart( "upper", "ACGTTGCAACGTTGCAACGTTGCAACGTTGCAACGT" );
+        addPart( "lower", "acgttgcaacgttgcaacgttgcaacgttgcaacgt" );
+        addPart( "mixed", MIXED );
+        addPart( "iupac", "acgtNNRYacgtWSKMbdhv" );
+        addPart( "non_dna", "ACGU-acgu" );
+        addPart( "empty", "" );
+        addPart( "copy", MIXED );
+    }
+
+    private void addPart( String partId, String elements ) throws Exception
+    {
+        document.createSequence( partId + "_sequence", Cello2SBOL.version, elements, Sequence.IUPAC_DNA );
+    }
+
+    public void testDecodesEveryCase()
+    {
+        SequenceStore store = new SequenceStore( document );
+        for ( String partId : Arrays.asList( "upper", "lower", "mixed", "iupac", "non_dna", "empty" ) )
+        {
+            String elements = document.getSequence( partId + "_sequence", Cello2SBOL.version ).getElements();
+            assertEquals( partId, elements, store.getElements( partId ) );
+            assertEquals( partId, elements.length(), store.length( partId ) );
+        }
+    }
+
+    public void testAssemblesAcrossWordBoundaries()
+    {
+        SequenceStore store = new SequenceStore( document );
+        assertEquals( MIXED + "acgtNNRYacgtWSKMbdhv" + "ACGTTGCAACGTTGCAACGTTGCAACGTTGCAACGT" + MIXED,
+            store.assemble( Arrays.asList( "mixed", "iupac", "upper", "mixed" ) ) );
+    }
+
+    public void testInternsEqualSequences()
+    {
+        SequenceStore store = new SequenceStore( document );
+        store.getElements( "mixed" );
+        store.getElements( "copy" );
+        store.getElements( "upper" );
+        store.getElements( "lower" );
+        assertEquals( 3, store.size() );
+    }
+}
@@ -0,0 +1,42 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.sbolstandard.core2.SBOLDocument;
+
+/**
+ * Checks that a converted document reads back unchanged from its snapshot.
+ */
+public class SnapshotCacheTest
+    extends TestCase
+{
+    private static final String UCF_FILE = "src/main/resources/Eco1C1G1T1.UCF.json";
+
+    public SnapshotCacheTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( SnapshotCacheTest.class );
+    }
+
+    public void testRoundTrip() throws Exception
+    {
+        SBOLDocument document = Cello2SBOL.convert( UCF_FILE, new HashMap<String,String>(), Cello2SBOL.now() );
+
+        byte[] bytes = SnapshotCache.toBytes( document );
+        assertNotNull( "the document cannot be snapshot", bytes );
+        SBOLDocument loaded = SnapshotCache.fromBytes( bytes );
+
+        assertEquals( document.getTopLevels().size(), loaded.getTopLevels().size() );
+        assertEquals( document, loaded );
+        assertTrue( Arrays.equals( bytes, SnapshotCache.toBytes( loaded ) ) );
+    }
+}
@@ -0,0 +1,179 @@
+package UCF2SBOL.UCF2SBOL;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.sbolstandard.core2.Activity;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLWriter;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Checks that streaming a UCF file to triples gives the same graph as converting it to a document, and
+ * that the triples of a document are those libSBOLj serializes.
+ */
+public class TripleConverterTest
+    extends TestCase
+{
+    private static final String UCF_FILE = "src/main/resources/Eco1C1G1T1-tandem-synbiohub.UCF.json";
+
+    /**
+     * Collects triples as N-Triples-like strings. The graphs have no blank nodes, so they are isomorphic
+     * when they have the same triples.
+     */
+    private static class TripleSet implements SBOLTriples.Sink
+    {
+        final Set<String> triples = new HashSet<String>();
+        int duplicates;
+
+        public void resource( String subject, String predicate, String object )
+        {
+            add( "<" + subject + "> <" + predicate + "> <" + object + ">" );
+        }
+
+        public void literal( String subject, String predicate, String value )
+        {
+            add( "<" + subject + "> <" + predicate + "> \"" + value + "\"" );
+        }
+
+        private void add( String triple )
+        {
+            if ( !triples.add( triple ) )
+            {
+                duplicates++;
+            }
+        }
+    }
+
+    public TripleConverterTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TripleConverterTest.class );
+    }
+
+    public void testIsomorphicToDocument() throws Exception
+    {
+        assertIsomorphic( false );
+    }
+
+    public void testIsomorphicToDocumentWithSlimProvenance() throws Exception
+    {
+        assertIsomorphic( true );
+    }
+
+    public void testDocumentTriplesMatchRdfXml() throws Exception
+    {
+        SBOLDocument document = Cello2SBOL.convert( UCF_FILE, new HashMap<String,String>(), Cello2SBOL.now() );
+        ByteArrayOutputStream rdfXml = new ByteArrayOutputStream();
+        SBOLWriter.write( document, rdfXml, SBOLDocument.RDF );
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware( true );
+        Element root = factory.newDocumentBuilder()
+            .parse( new ByteArrayInputStream( rdfXml.toByteArray() ) ).getDocumentElement();
+        TripleSet expected = new TripleSet();
+        for ( Element node : elements( root ) )
+        {
+            readNode( node, expected );
+        }
+        TripleSet actual = new TripleSet();
+        new SBOLTriples( actual ).write( document );
+
+        assertSameTriples( expected, actual );
+    }
+
+    /**
+     * Reads the triples of a typed node element in the striped RDF/XML that libSBOLj writes: a property
+     * element holds a resource, a nested node or a literal.
+     */
+    private static void readNode( Element node, TripleSet triples )
+    {
+        String subject = node.getAttributeNS( SBOLTriples.RDF, "about" );
+        triples.resource( subject, SBOLTriples.TYPE, node.getNamespaceURI() + node.getLocalName() );
+        for ( Element property : elements( node ) )
+        {
+            String predicate = property.getNamespaceURI() + property.getLocalName();
+            List<Element> objects = elements( property );
+            if ( property.hasAttributeNS( SBOLTriples.RDF, "resource" ) )
+            {
+                triples.resource( subject, predicate, property.getAttributeNS( SBOLTriples.RDF, "resource" ) );
+            }
+            else if ( !objects.isEmpty() )
+            {
+                for ( Element object : objects )
+                {
+                    triples.resource( subject, predicate, object.getAttributeNS( SBOLTriples.RDF, "about" ) );
+                    readNode( object, triples );
+                }
+            }
+            else
+            {
+                triples.literal( subject, predicate, property.getTextContent() );
+            }
+        }
+    }
+
+    private static List<Element> elements( Element parent )
+    {
+        List<Element> elements = new ArrayList<Element>();
+        for ( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() )
+        {
+            if ( child.getNodeType() == Node.ELEMENT_NODE )
+            {
+                elements.add( (Element) child );
+            }
+        }
+        return elements;
+    }
+
+    private void assertIsomorphic( boolean slim ) throws Exception
+    {
+        String createdDate = Cello2SBOL.now();
+        Cello2SBOL.slimProvenance = slim;
+        SBOLDocument document;
+        try
+        {
+            document = Cello2SBOL.convert( UCF_FILE, new HashMap<String,String>(), createdDate );
+        }
+        finally
+        {
+            Cello2SBOL.slimProvenance = false;
+        }
+        TripleSet expected = new TripleSet();
+        new SBOLTriples( expected ).write( document );
+
+        Activity activity = document.getActivity( Cello2SBOL.activityId, Cello2SBOL.version );
+        TripleSet actual = new TripleSet();
+        new TripleConverter( actual, createdDate, slim ).convert( UCF_FILE, activity.getEndedAtTime() );
+
+        assertSameTriples( expected, actual );
+    }
+
+    private static void assertSameTriples( TripleSet expected, TripleSet actual )
+    {
+        assertEquals( 0, actual.duplicates );
+        Set<String> missing = new HashSet<String>( expected.triples );
+        missing.removeAll( actual.triples );
+        Set<String> extra = new HashSet<String>( actual.triples );
+        extra.removeAll( expected.triples );
+        assertTrue( "missing " + missing, missing.isEmpty() );
+        assertTrue( "extra " + extra, extra.isEmpty() );
+        assertEquals( expected.triples.size(), actual.triples.size() );
+    }
+}